@@ -1,22 +1,49 @@
+--ids come from sequences so hibernate can batch inserts.
+--the increment has to match the allocationSize on the entities (pooled optimizer). Starting at the increment
+--every value v stands for the ids v-49..v, to hibernate and to BulkLoader alike.
+create sequence book_seq start with 50 increment by 50;
+create sequence author_seq start with 50 increment by 50;
+create sequence author_award_seq start with 50 increment by 50;
+
 create table Book (
-	id SERIAL PRIMARY KEY,
+	id bigint PRIMARY KEY,
 	title varchar(100));
-	
-	
-	
+
+
+
 create table Author (
-	id SERIAL PRIMARY key,
+	id bigint PRIMARY key,
 	auth_name varchar(200)
 );
+--name lookups and keyset pages on (auth_name, id); the second one is for the case-insensitive prefix search.
+create index author_name_idx on author (auth_name, id);
+create index author_lower_name_idx on author ((lower(auth_name) collate "C"), id);
 
 
 create table book_authorship (
 	book_id bigint references book (id),
-	author_id bigint references author (id)
+	author_id bigint references author (id),
+	primary key (author_id, book_id)
 );
+--the primary key covers "books of an author"; this one covers "authors of a book".
+create index book_authorship_book_idx on book_authorship (book_id, author_id);
 create table Author_Award (
-	id SERIAL PRIMARY key,
+	id bigint PRIMARY key,
 	author_id bigint REFERENCES author (id),
 	award_desc varchar(300),
 	monetary_reward bigint
-);
\ No newline at end of file
+);
+--per author sum of monetary_reward and number of awards, kept up to date by AwardTotalsListener.
+--every author has a row; deleting the author deletes it.
+create table author_award_total (
+	author_id bigint PRIMARY key REFERENCES author (id) on delete cascade,
+	total_reward bigint not null default 0,
+	award_count int not null default 0
+);
+--the leaderboard: top k by total_reward.
+create index author_award_total_rank_idx on author_award_total (total_reward desc, author_id);
+--loading or counting the awards of an author.
+create index author_award_author_idx on author_award (author_id);
+--full-text search (LibrarySearch). The expressions must match the ones in the queries exactly.
+create index book_title_fts on book using gin (to_tsvector('simple', coalesce(title, '')));
+create index author_award_desc_fts on author_award using gin (to_tsvector('simple', coalesce(award_desc, '')));
@@ -0,0 +1,80 @@
+package main.bench;
+
+import static main.TestAuthors.author;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import main.models.Author;
+import main.repository.AuthorRepository;
+import main.repository.AuthorSummary;
+import main.session.ReadOnlySessionTemplate;
+
+/**
+ * Listing every author with their book and award counts: once by loading the entities and counting
+ * the collections, once as a projection. Run with the gc profiler to compare allocation per listing.
+ */
+@State(Scope.Benchmark)
+public class AuthorListingBenchmark {
+
+	@Param({ "100000" })
+	public int authors;
+
+	//only the trial setup takes the library: JMH 1.21 generates broken code for a state parameter on two setups
+	private SessionFactory sessionFactory;
+	private AuthorRepository repository;
+
+	@Setup(Level.Trial)
+	public void insertAuthors(EmbeddedLibrary library) {
+		library.clear();
+		sessionFactory = library.sessionFactory;
+		repository = new AuthorRepository(new ReadOnlySessionTemplate(library.sessionFactory));
+		LibraryGraphs.inTransaction(library.sessionFactory, null, session -> {
+			for (int i = 0; i < authors; i++) {
+				session.save(author("Author " + i).books(2).awards(2).build());
+				if (i % 1000 == 999) {
+					session.flush();
+					session.clear();
+				}
+			}
+			return null;
+		});
+	}
+
+	//otherwise the entity listing is mostly served by the second level cache
+	@Setup(Level.Invocation)
+	public void evictCaches() {
+		sessionFactory.getCache().evictAllRegions();
+	}
+
+	@Benchmark
+	public List<AuthorSummary> entities() {
+		Session session = sessionFactory.openSession();
+		try {
+			session.beginTransaction();
+			List<AuthorSummary> summaries = new ArrayList<>();
+			for (Author author : session.createQuery("from Author a order by a.name, a.id", Author.class).list()) {
+				summaries.add(new AuthorSummary(author.getId(), author.getName(), author.getBooks().size(),
+						author.getAuthorAward().size()));
+			}
+			session.getTransaction().commit();
+			return summaries;
+		} finally {
+			session.close();
+		}
+	}
+
+	@Benchmark
+	public List<AuthorSummary> projection() {
+		return repository.findSummaries(0, authors);
+	}
+}
@@ -0,0 +1,64 @@
+package main.bench;
+
+import static main.TestAuthors.author;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import main.repository.AuthorKey;
+import main.repository.AuthorRepository;
+import main.repository.AuthorSummary;
+import main.session.ReadOnlySessionTemplate;
+
+/**
+ * Fetching one page of the author listing deep into the list, by offset and by keyset.
+ * The keyset score should not move with page, the offset one falls off.
+ */
+@State(Scope.Benchmark)
+public class AuthorPagingBenchmark {
+
+	private static final int PAGE_SIZE = 20;
+
+	@Param({ "1", "100", "10000" })
+	public int page;
+
+	private AuthorRepository repository;
+	private AuthorKey previousPage;
+
+	@Setup(Level.Trial)
+	public void insertAuthors(EmbeddedLibrary library) {
+		library.clear();
+		repository = new AuthorRepository(new ReadOnlySessionTemplate(library.sessionFactory));
+		LibraryGraphs.inTransaction(library.sessionFactory, null, session -> {
+			for (int i = 0; i < PAGE_SIZE * 10000; i++) {
+				//a handful of names so most of the ordering is on id
+				session.save(author("Author " + (i % 97)).build());
+				if (i % 1000 == 999) {
+					session.flush();
+					session.clear();
+				}
+			}
+			return null;
+		});
+		if (page > 1) {
+			List<AuthorSummary> before = repository.findSummaries((page - 1) * PAGE_SIZE - 1, 1);
+			previousPage = AuthorKey.of(before.get(0));
+		}
+	}
+
+	@Benchmark
+	public List<AuthorSummary> offset() {
+		return repository.findSummaries((page - 1) * PAGE_SIZE, PAGE_SIZE);
+	}
+
+	@Benchmark
+	public List<AuthorSummary> keyset() {
+		return repository.findSummaries(previousPage, PAGE_SIZE);
+	}
+}
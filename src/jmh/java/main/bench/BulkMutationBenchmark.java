@@ -0,0 +1,73 @@
+package main.bench;
+
+import static main.TestAuthors.author;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import main.bulk.AuthorDeleter;
+import main.bulk.BulkMutator;
+import main.models.Author;
+
+/**
+ * Renaming every author: loading them, setting the name and letting the flush write one update per row
+ * (batched), against one set-based update per thousand ids through {@link BulkMutator}.
+ * Each invocation renames all of them, so it is timed one shot at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BulkMutationBenchmark {
+
+	@Param({ "1000", "100000" })
+	public int authors;
+
+	private BulkMutator mutator;
+	private long version;
+
+	@Setup(Level.Trial)
+	public void insertAuthors(EmbeddedLibrary library) {
+		library.clear();
+		mutator = new BulkMutator(new AuthorDeleter(library.sessionFactory));
+		LibraryGraphs.inTransaction(library.sessionFactory, null, session -> {
+			for (int i = 0; i < authors; i++) {
+				session.save(author("Author " + i).build());
+				if (i % 1000 == 999) {
+					session.flush();
+					session.clear();
+				}
+			}
+			return null;
+		});
+	}
+
+	@Benchmark
+	public int loadModifyFlush(EmbeddedLibrary library, SqlCounters sql) {
+		String name = "Renamed " + version++;
+		return LibraryGraphs.inTransaction(library.sessionFactory, sql, session -> {
+			List<Author> all = session.createQuery("from Author a", Author.class).list();
+			for (Author author : all) {
+				author.setName(name);
+			}
+			return all.size();
+		});
+	}
+
+	@Benchmark
+	public int bulkUpdate(EmbeddedLibrary library, SqlCounters sql) {
+		String name = "Renamed " + version++;
+		return LibraryGraphs.inTransaction(library.sessionFactory, sql, session -> mutator.update(session, Author.class,
+				(cb, a) -> cb.conjunction(), Collections.singletonMap("name", name)).getRows());
+	}
+}
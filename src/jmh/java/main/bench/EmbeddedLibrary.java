@@ -0,0 +1,53 @@
+package main.bench;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import main.Main;
+
+/**
+ * The application context from {@link Main}, pointed at an in-memory H2 database unless
+ * library.jdbc.url says otherwise. Hibernate creates the schema on startup.
+ */
+@State(Scope.Benchmark)
+public class EmbeddedLibrary {
+
+	public SessionFactory sessionFactory;
+	private AnnotationConfigApplicationContext context;
+
+	@Setup(Level.Trial)
+	public void start() {
+		if (System.getProperty("library.jdbc.url") == null) {
+			System.setProperty("library.jdbc.url", "jdbc:h2:mem:library;DB_CLOSE_DELAY=-1");
+			System.setProperty("library.jdbc.user", "sa");
+			System.setProperty("library.jdbc.password", "");
+			System.setProperty("library.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+			System.setProperty("library.hibernate.hbm2ddl", "create");
+		}
+		context = new AnnotationConfigApplicationContext(Main.class);
+		sessionFactory = context.getBean(SessionFactory.class);
+	}
+
+	public void clear() {
+		Session session = sessionFactory.openSession();
+		session.beginTransaction();
+		session.createNativeQuery("delete from book_authorship").executeUpdate();
+		session.createNativeQuery("delete from author_award").executeUpdate();
+		session.createNativeQuery("delete from author_award_total").executeUpdate();
+		session.createNativeQuery("delete from author").executeUpdate();
+		session.createNativeQuery("delete from book").executeUpdate();
+		session.getTransaction().commit();
+		session.close();
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() {
+		context.close();
+	}
+}
@@ -0,0 +1,30 @@
+package main.bench;
+
+import java.util.function.Function;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import main.metrics.StatementCounter;
+
+final class LibraryGraphs {
+
+	private LibraryGraphs() {
+	}
+
+	static <T> T inTransaction(SessionFactory sessionFactory, SqlCounters sql, Function<Session, T> work) {
+		StatementCounter counter = new StatementCounter();
+		Session session = sessionFactory.withOptions().eventListeners(counter).openSession();
+		try {
+			session.beginTransaction();
+			T result = work.apply(session);
+			session.getTransaction().commit();
+			return result;
+		} finally {
+			session.close();
+			if (sql != null) {
+				sql.add(counter);
+			}
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package main.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Environment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.models.Author;
+import main.models.AuthorAward;
+import main.models.AuthorAwardTotal;
+import main.models.Book;
+
+/**
+ * The entity mappings alone, built cold in a fresh JVM like in {@link StartupBenchmark}: what a cache of
+ * the built mapping metadata could at best take off the time to first query. Compare with firstQuery
+ * there before reaching for one.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class MappingBenchmark {
+
+	@Benchmark
+	public Metadata mappingMetadata() {
+		StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+				.applySetting(Environment.DIALECT, "org.hibernate.dialect.H2Dialect")
+				//no database here, only the mappings
+				.applySetting("hibernate.temp.use_jdbc_metadata_defaults", "false")
+				.build();
+		try {
+			return new MetadataSources(registry)
+					.addAnnotatedClass(Author.class)
+					.addAnnotatedClass(AuthorAward.class)
+					.addAnnotatedClass(Book.class)
+					.addAnnotatedClass(AuthorAwardTotal.class)
+					.buildMetadata();
+		} finally {
+			StandardServiceRegistryBuilder.destroy(registry);
+		}
+	}
+}
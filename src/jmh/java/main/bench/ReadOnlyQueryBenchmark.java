@@ -0,0 +1,59 @@
+package main.bench;
+
+import static main.TestAuthors.author;
+
+import java.util.List;
+
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import main.models.Author;
+import main.session.ReadOnlySessionTemplate;
+
+/**
+ * Loading a large result into a default session versus a read-only one. Compare the gc profiler's
+ * allocation rate as well as the score.
+ */
+@State(Scope.Benchmark)
+public class ReadOnlyQueryBenchmark {
+
+	@Param({ "10000" })
+	public int authors;
+
+	private ReadOnlySessionTemplate readOnly;
+
+	@Setup(Level.Trial)
+	public void insertAuthors(EmbeddedLibrary library) {
+		library.clear();
+		readOnly = new ReadOnlySessionTemplate(library.sessionFactory);
+		LibraryGraphs.inTransaction(library.sessionFactory, null, session -> {
+			for (int i = 0; i < authors; i++) {
+				session.save(author("Reader " + i).build());
+			}
+			return null;
+		});
+	}
+
+	@Benchmark
+	public List<Author> defaultSession(EmbeddedLibrary library) {
+		Session session = library.sessionFactory.openSession();
+		try {
+			session.beginTransaction();
+			List<Author> result = session.createQuery("from Author", Author.class).list();
+			session.getTransaction().commit();
+			return result;
+		} finally {
+			session.close();
+		}
+	}
+
+	@Benchmark
+	public List<Author> readOnlySession() {
+		return readOnly.execute(session -> session.createQuery("from Author", Author.class).list());
+	}
+}
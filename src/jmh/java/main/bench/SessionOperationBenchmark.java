@@ -0,0 +1,123 @@
+package main.bench;
+
+import static main.TestAuthors.author;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import main.models.Author;
+
+/**
+ * What save, persist, merge, update and saveOrUpdate cost for transient, detached and managed authors.
+ * Every invocation is a whole unit of work: open a session, do the one operation, commit, close.
+ * graphSize is the number of cascaded books and of cascaded awards hanging off the author.
+ */
+@State(Scope.Thread)
+public class SessionOperationBenchmark {
+
+	@Param({ "0", "10", "100" })
+	public int graphSize;
+
+	private Author detached;
+	private long version;
+
+	@Setup(Level.Iteration)
+	public void saveDetachedAuthor(EmbeddedLibrary library) {
+		library.clear();
+		detached = author("Detached").books(graphSize).awards(graphSize).build();
+		LibraryGraphs.inTransaction(library.sessionFactory, null, session -> session.save(detached));
+	}
+
+	// transient
+
+	@Benchmark
+	public Object saveTransient(EmbeddedLibrary library, SqlCounters sql) {
+		Author author = author("Transient").books(graphSize).awards(graphSize).build();
+		return LibraryGraphs.inTransaction(library.sessionFactory, sql, session -> session.save(author));
+	}
+
+	@Benchmark
+	public Object persistTransient(EmbeddedLibrary library, SqlCounters sql) {
+		Author author = author("Transient").books(graphSize).awards(graphSize).build();
+		return LibraryGraphs.inTransaction(library.sessionFactory, sql, session -> {
+			session.persist(author);
+			return author;
+		});
+	}
+
+	@Benchmark
+	public Object mergeTransient(EmbeddedLibrary library, SqlCounters sql) {
+		Author author = author("Transient").books(graphSize).awards(graphSize).build();
+		return LibraryGraphs.inTransaction(library.sessionFactory, sql, session -> session.merge(author));
+	}
+
+	@Benchmark
+	public Object saveOrUpdateTransient(EmbeddedLibrary library, SqlCounters sql) {
+		Author author = author("Transient").books(graphSize).awards(graphSize).build();
+		return LibraryGraphs.inTransaction(library.sessionFactory, sql, session -> {
+			session.saveOrUpdate(author);
+			return author;
+		});
+	}
+
+	// detached - the same instance every time, renamed so there is always something to write
+
+	@Benchmark
+	public Object mergeDetached(EmbeddedLibrary library, SqlCounters sql) {
+		detached.setName("Detached " + version++);
+		return LibraryGraphs.inTransaction(library.sessionFactory, sql, session -> session.merge(detached));
+	}
+
+	@Benchmark
+	public Object updateDetached(EmbeddedLibrary library, SqlCounters sql) {
+		detached.setName("Detached " + version++);
+		return LibraryGraphs.inTransaction(library.sessionFactory, sql, session -> {
+			session.update(detached);
+			return detached;
+		});
+	}
+
+	@Benchmark
+	public Object saveOrUpdateDetached(EmbeddedLibrary library, SqlCounters sql) {
+		detached.setName("Detached " + version++);
+		return LibraryGraphs.inTransaction(library.sessionFactory, sql, session -> {
+			session.saveOrUpdate(detached);
+			return detached;
+		});
+	}
+
+	// managed - loaded in the same session, so the operation itself should be close to free
+
+	@Benchmark
+	public Object mergeManaged(EmbeddedLibrary library, SqlCounters sql) {
+		return LibraryGraphs.inTransaction(library.sessionFactory, sql, session -> {
+			Author managed = session.get(Author.class, detached.getId());
+			managed.setName("Managed " + version++);
+			return session.merge(managed);
+		});
+	}
+
+	@Benchmark
+	public Object updateManaged(EmbeddedLibrary library, SqlCounters sql) {
+		return LibraryGraphs.inTransaction(library.sessionFactory, sql, session -> {
+			Author managed = session.get(Author.class, detached.getId());
+			managed.setName("Managed " + version++);
+			session.update(managed);
+			return managed;
+		});
+	}
+
+	@Benchmark
+	public Object saveOrUpdateManaged(EmbeddedLibrary library, SqlCounters sql) {
+		return LibraryGraphs.inTransaction(library.sessionFactory, sql, session -> {
+			Author managed = session.get(Author.class, detached.getId());
+			managed.setName("Managed " + version++);
+			session.saveOrUpdate(managed);
+			return managed;
+		});
+	}
+}
@@ -0,0 +1,31 @@
+package main.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import main.metrics.StatementCounter;
+
+/**
+ * Reports the jdbc statements and batches a benchmark sent next to its score.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class SqlCounters {
+
+	public long statements;
+	public long batches;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		statements = 0;
+		batches = 0;
+	}
+
+	public void add(StatementCounter counter) {
+		statements += counter.getStatements();
+		batches += counter.getBatches();
+	}
+}
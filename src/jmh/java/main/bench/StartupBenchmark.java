@@ -0,0 +1,68 @@
+package main.bench;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import main.Main;
+
+/**
+ * Time to first query: create the application context from {@link Main} and run one HQL query, in a fresh
+ * JVM every time, the way a batch worker or a test fork starts. lazy is library.bootstrap.lazy.
+ * The table is created beforehand (not timed), so schema generation doesn't open a connection early.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+
+	private static final String URL = "jdbc:h2:mem:startup;DB_CLOSE_DELAY=-1";
+
+	@Param({ "true", "false" })
+	public boolean lazy;
+
+	@Setup(Level.Trial)
+	public void createTable() throws SQLException {
+		try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+				Statement statement = connection.createStatement()) {
+			statement.execute("create table author (id bigint primary key, auth_name varchar(200))");
+		}
+		System.setProperty("library.jdbc.url", URL);
+		System.setProperty("library.jdbc.user", "sa");
+		System.setProperty("library.jdbc.password", "");
+		System.setProperty("library.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+		System.setProperty("library.hibernate.hbm2ddl", "none");
+		System.setProperty("library.bootstrap.lazy", String.valueOf(lazy));
+	}
+
+	@Benchmark
+	public long firstQuery() {
+		try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(Main.class)) {
+			SessionFactory sessionFactory = context.getBean(SessionFactory.class);
+			try (Session session = sessionFactory.openSession()) {
+				return session.createQuery("select count(a) from Author a", Long.class).getSingleResult();
+			}
+		}
+	}
+}
@@ -1,42 +1,250 @@
 package main;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.sql.DataSource;
 
+import org.hibernate.MultiTenancyStrategy;
 import org.hibernate.SessionFactory;
+import org.hibernate.boot.CacheRegionDefinition;
+import org.hibernate.boot.CacheRegionDefinition.CacheRegionType;
+import org.hibernate.boot.MetadataBuilder;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Environment;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.stat.internal.StatisticsInitiator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableMBeanExport;
+import org.springframework.core.env.PropertyResolver;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jmx.support.RegistrationPolicy;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 
+import main.metrics.PoolMetrics;
+import main.metrics.QueryLatencyStatistics;
 import main.models.Author;
 import main.models.AuthorAward;
+import main.models.AuthorAwardTotal;
 import main.models.Book;
+import main.routing.RoutingDataSource;
+import main.routing.WriteTracker;
+import main.session.ReadOnlyLoadListener;
+import main.tenancy.TenantConnectionProvider;
+import main.tenancy.TenantResolver;
+import main.totals.AwardTotalsListener;
 
+//the build writes META-INF/spring.components (spring-context-indexer), Spring then reads the components from it
+//instead of scanning the classpath.
 @ComponentScan(basePackages = {"main"})
 @Configuration
+@EnableMBeanExport(registration = RegistrationPolicy.REPLACE_EXISTING)
 public class Main {
-	
+
+	private static final Class<?>[] ENTITIES = { Author.class, AuthorAward.class, Book.class };
+	private static final int JDBC_BATCH_SIZE = 50;
+	private static final String[] CACHED_COLLECTIONS = { "Author.books", "Author.authorAward", "Book.authors" };
+
+	@Autowired
+	private PropertyResolver properties;
+
 	@SuppressWarnings("resource")
 	public static void main(String[] args) {
 		new AnnotationConfigApplicationContext(Main.class);
 	}
-	
+
 	@Bean
-	public SessionFactory sessionFactory() {
-		org.hibernate.cfg.Configuration hibConfig = new org.hibernate.cfg.Configuration();
-		hibConfig.setProperty(Environment.URL, "jdbc:postgresql://localhost:5432/library");
-		hibConfig.setProperty(Environment.USER, "alex");
-		hibConfig.setProperty(Environment.PASS, "alex");
-		hibConfig.setProperty(Environment.DRIVER, "org.postgresql.Driver");
-		hibConfig.setProperty(Environment.DIALECT, "org.hibernate.dialect.PostgreSQLDialect");
-		hibConfig.setProperty(Environment.POOL_SIZE, "3");
-		hibConfig.addPackage("main.models");
-		hibConfig.addAnnotatedClass(Author.class);
-		hibConfig.addAnnotatedClass(AuthorAward.class);
-		hibConfig.addAnnotatedClass(Book.class);
-
-		return hibConfig.buildSessionFactory();
+	public PoolMetrics poolMetrics() {
+		return new PoolMetrics();
+	}
+
+	//Every setting can be overridden with a system property, e.g. -Dlibrary.pool.maxSize=40
+	@Bean(destroyMethod = "close")
+	public HikariDataSource dataSource(PoolMetrics poolMetrics,
+			@Value("${library.jdbc.url:jdbc:postgresql://localhost:5432/library}") String url,
+			@Value("${library.jdbc.user:alex}") String user,
+			@Value("${library.jdbc.password:alex}") String password,
+			@Value("${library.pool.minIdle:2}") int minIdle,
+			@Value("${library.pool.maxSize:20}") int maxSize,
+			@Value("${library.pool.idleTimeoutMs:300000}") long idleTimeoutMs,
+			@Value("${library.pool.connectionTimeoutMs:5000}") long connectionTimeoutMs,
+			@Value("${library.pool.leakDetectionMs:0}") long leakDetectionMs,
+			@Value("${library.pool.statementCacheSize:256}") int statementCacheSize,
+			@Value("${library.bootstrap.lazy:true}") boolean lazyBootstrap) {
+		HikariConfig config = new HikariConfig();
+		config.setPoolName("library");
+		//the driver is picked from the url, so the benchmarks can point this at an embedded database.
+		config.setJdbcUrl(url);
+		config.setUsername(user);
+		config.setPassword(password);
+		config.setMinimumIdle(minIdle);
+		config.setMaximumPoolSize(maxSize);
+		config.setIdleTimeout(idleTimeoutMs);
+		config.setConnectionTimeout(connectionTimeoutMs);
+		config.setLeakDetectionThreshold(leakDetectionMs);
+		if (url.startsWith("jdbc:postgresql:")) {
+			//Hikari leaves statement caching to the driver. pgjdbc keeps server-side prepared statements per connection.
+			config.addDataSourceProperty("prepareThreshold", "3");
+			config.addDataSourceProperty("preparedStatementCacheQueries", String.valueOf(statementCacheSize));
+		}
+		config.setMetricsTrackerFactory(poolMetrics);
+		if (lazyBootstrap) {
+			//don't wait for a first connection at startup; the pool fills in the background and a database that
+			//is down shows up on first use instead.
+			config.setInitializationFailTimeout(-1);
+		}
+		return new HikariDataSource(config);
+	}
+
+	//Read-only sessions (ReadOnlySessionTemplate) go to a replica when library.replica.urls lists any, e.g.
+	//-Dlibrary.replica.urls=jdbc:postgresql://localhost:5433/library. Replicas get the primary's pool settings.
+	@Bean(destroyMethod = "close")
+	public RoutingDataSource routingDataSource(HikariDataSource dataSource,
+			@Value("${library.replica.urls:}") String replicaUrls,
+			@Value("${library.routing.balance:ROUND_ROBIN}") RoutingDataSource.Balance balance,
+			@Value("${library.routing.stickyMs:2000}") long stickyMillis) {
+		List<HikariDataSource> replicas = new ArrayList<>();
+		for (String url : replicaUrls.split(",")) {
+			if (url.trim().isEmpty()) {
+				continue;
+			}
+			HikariConfig config = new HikariConfig();
+			dataSource.copyStateTo(config);
+			config.setPoolName("library-replica-" + (replicas.size() + 1));
+			config.setJdbcUrl(url.trim());
+			//PoolMetrics follows the primary pool only
+			config.setMetricsTrackerFactory(null);
+			replicas.add(new HikariDataSource(config));
+		}
+		return new RoutingDataSource(dataSource, replicas, balance, stickyMillis);
+	}
+
+	//Runs the units of work of AsyncLibraryRepository. Twice as many threads as connections by default: the
+	//repository's own admission, not the thread count, keeps them to the pool's size, and the spare threads
+	//are what lets work waiting for a connection give up at its deadline. The queue is bounded, past
+	//library.async.queueSize waiting units of work a call fails at once with a RejectedExecutionException.
+	@Bean(destroyMethod = "shutdown")
+	public ThreadPoolExecutor libraryExecutor(@Value("${library.pool.maxSize:20}") int poolSize,
+			@Value("${library.async.threads:0}") int threads, @Value("${library.async.queueSize:10000}") int queueSize) {
+		AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = runnable -> {
+			Thread thread = new Thread(runnable, "library-async-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		int size = threads > 0 ? threads : 2 * poolSize;
+		return new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize), factory);
+	}
+
+	//One schema per catalog, all on the one pool (see Tenants). library.tenancy.maxConnections is what a single
+	//tenant can hold at once; keep it well under library.pool.maxSize so a busy tenant leaves room for the rest.
+	//The default tenant, public, can take the whole pool, so single-catalog use is unchanged. Capping it is opt-in:
+	//set library.tenancy.defaultMaxConnections when public shares the pool with other catalogs.
+	@Bean
+	public TenantConnectionProvider tenantConnectionProvider(@Qualifier("routingDataSource") DataSource dataSource,
+			@Value("${library.tenancy.maxConnections:4}") int maxConnections,
+			@Value("${library.tenancy.defaultMaxConnections:${library.pool.maxSize:20}}") int defaultMaxConnections,
+			@Value("${library.pool.connectionTimeoutMs:5000}") long connectionTimeoutMs) {
+		return new TenantConnectionProvider(dataSource, maxConnections, defaultMaxConnections, connectionTimeoutMs);
+	}
+
+	@Bean
+	public SessionFactory sessionFactory(TenantConnectionProvider tenantConnections,
+			@Value("${library.hibernate.dialect:org.hibernate.dialect.PostgreSQLDialect}") String dialect,
+			@Value("${library.hibernate.hbm2ddl:none}") String hbm2ddl,
+			@Value("${library.fetch.batchSize:32}") int batchFetchSize,
+			@Value("${library.stats.slowQueryMs:200}") long slowQueryMs,
+			@Value("${library.bootstrap.lazy:true}") boolean lazyBootstrap) {
+		StandardServiceRegistryBuilder hibConfig = new StandardServiceRegistryBuilder();
+		//connections come from the routing data source through the tenant's connection provider
+		hibConfig.applySetting(Environment.MULTI_TENANT, MultiTenancyStrategy.SCHEMA);
+		hibConfig.applySetting(Environment.MULTI_TENANT_CONNECTION_PROVIDER, tenantConnections);
+		hibConfig.applySetting(Environment.MULTI_TENANT_IDENTIFIER_RESOLVER, new TenantResolver());
+		hibConfig.applySetting(Environment.DIALECT, dialect);
+		if (lazyBootstrap) {
+			//no connection at startup just to read the jdbc metadata. Without it hibernate assumes the driver can do
+			//none of what it would have asked about, so what this application relies on is set here instead: the
+			//batch size further down, scrollable results for LibraryExporter.
+			hibConfig.applySetting("hibernate.temp.use_jdbc_metadata_defaults", "false");
+			hibConfig.applySetting(Environment.USE_SCROLLABLE_RESULTSET, "true");
+		}
+		//the real schema is buildtables.sql; this is for throwaway databases like the one the benchmarks use.
+		hibConfig.applySetting(Environment.HBM2DDL_AUTO, hbm2ddl);
+		//sequence ids let these go out as jdbc batches instead of one round trip per row.
+		hibConfig.applySetting(Environment.STATEMENT_BATCH_SIZE, String.valueOf(JDBC_BATCH_SIZE));
+		hibConfig.applySetting(Environment.ORDER_INSERTS, "true");
+		hibConfig.applySetting(Environment.ORDER_UPDATES, "true");
+		hibConfig.applySetting(Environment.BATCH_VERSIONED_DATA, "true");
+		//lazy proxies and collections without their own @BatchSize/@Fetch get initialized this many at a time.
+		hibConfig.applySetting(Environment.DEFAULT_BATCH_FETCH_SIZE, String.valueOf(batchFetchSize));
+		hibConfig.applySetting(Environment.BATCH_FETCH_STYLE, "DYNAMIC");
+		//in (:ids) lists are padded to a power of two, so there are a handful of query plans instead of one per size.
+		hibConfig.applySetting(Environment.IN_CLAUSE_PARAMETER_PADDING, "true");
+		//regions, sizes and expiry are in ehcache.xml
+		hibConfig.applySetting(Environment.USE_SECOND_LEVEL_CACHE, "true");
+		hibConfig.applySetting(Environment.USE_QUERY_CACHE, "true");
+		hibConfig.applySetting(Environment.CACHE_REGION_FACTORY, "ehcache");
+		hibConfig.applySetting("net.sf.ehcache.configurationResourceName", "/ehcache.xml");
+		hibConfig.applySetting(Environment.GENERATE_STATISTICS, "true");
+		//adds per-query latency histograms and the slow query log; published over JMX by LibraryStatistics.
+		hibConfig.applySetting(StatisticsInitiator.STATS_BUILDER, new QueryLatencyStatistics.Factory(slowQueryMs));
+		MetadataSources sources = new MetadataSources(hibConfig.build());
+		sources.addPackage("main.models");
+		for (Class<?> entity : ENTITIES) {
+			sources.addAnnotatedClass(entity);
+		}
+		//not cached, it is written behind hibernate's back
+		sources.addAnnotatedClass(AuthorAwardTotal.class);
+		MetadataBuilder metadata = sources.getMetadataBuilder();
+		for (Class<?> entity : ENTITIES) {
+			//e.g. -Dlibrary.cache.Book=read-only
+			metadata.applyCacheRegionDefinition(new CacheRegionDefinition(CacheRegionType.ENTITY, entity.getName(),
+					cacheStrategy(entity.getSimpleName()), null, true));
+		}
+		for (String collection : CACHED_COLLECTIONS) {
+			metadata.applyCacheRegionDefinition(new CacheRegionDefinition(CacheRegionType.COLLECTION, "main.models." + collection,
+					cacheStrategy(collection), null, true));
+		}
+
+		//the setting alone is dropped to 0 when hibernate didn't read from the metadata that the driver can batch
+		SessionFactory sessionFactory = metadata.build().getSessionFactoryBuilder().applyJdbcBatchSize(JDBC_BATCH_SIZE).build();
+		AwardTotalsListener awardTotals = new AwardTotalsListener();
+		EventListenerRegistry listeners = sessionFactory.unwrap(SessionFactoryImplementor.class)
+				.getServiceRegistry().getService(EventListenerRegistry.class);
+		listeners.appendListeners(EventType.POST_INSERT, awardTotals);
+		listeners.appendListeners(EventType.PRE_UPDATE, awardTotals);
+		listeners.appendListeners(EventType.POST_UPDATE, awardTotals);
+		listeners.appendListeners(EventType.POST_DELETE, awardTotals);
+		//what ReadOnlySessionTemplate sessions load stays read-only, named queries or not.
+		listeners.appendListeners(EventType.POST_LOAD, new ReadOnlyLoadListener());
+		//keeps a thread's reads on the primary right after it wrote, see ReadRouting.
+		WriteTracker writes = new WriteTracker();
+		listeners.appendListeners(EventType.POST_INSERT, writes);
+		listeners.appendListeners(EventType.POST_UPDATE, writes);
+		listeners.appendListeners(EventType.POST_DELETE, writes);
+		listeners.appendListeners(EventType.POST_COLLECTION_RECREATE, writes);
+		listeners.appendListeners(EventType.POST_COLLECTION_UPDATE, writes);
+		listeners.appendListeners(EventType.POST_COLLECTION_REMOVE, writes);
+		return sessionFactory;
+	}
+
+	private String cacheStrategy(String region) {
+		return properties.getProperty("library.cache." + region, "read-write");
 	}
 
 }
@@ -0,0 +1,160 @@
+package main.bulk;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import main.models.Author;
+import main.models.AuthorAward;
+import main.models.Book;
+import main.routing.WriteTracker;
+
+/**
+ * Deletes authors with a handful of statements, however many awards and books they have.
+ * <p>
+ * session.delete() cascades by loading every award and book and deleting them a row at a time, and it
+ * deletes shared books too (which the other authors' links then refuse). Here the ids go to PostgreSQL
+ * as one array: the award ids and the linked book ids are looked up, then each table is cleared with one
+ * statement, children first: awards, book_authorship, the books that have no author left, the authors.
+ * Books shared with an author who stays are kept.
+ * <p>
+ * The deletes are native queries synchronized with the entities and tables they touch, so hibernate's bulk
+ * cleanup locks the entity and collection regions of those (and the query cache) while the transaction
+ * runs and empties them when it completes. Sessions that already hold one of these authors still see it,
+ * except the one passed to {@link #deleteByIds(Session, Collection)}.
+ */
+@Component
+public class AuthorDeleter {
+
+	private final SessionFactory sessionFactory;
+
+	@Autowired
+	public AuthorDeleter(SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
+	}
+
+	public BulkDeleteResult deleteByIds(Collection<Long> authorIds) {
+		return inTransaction(session -> delete(session, authorIds));
+	}
+
+	/**
+	 * @param where which authors, e.g. {@code (cb, a) -> cb.like(a.get("name"), "Draft%")}
+	 */
+	public BulkDeleteResult deleteWhere(Where<Author> where) {
+		return inTransaction(session -> {
+			CriteriaBuilder cb = session.getCriteriaBuilder();
+			CriteriaQuery<Long> query = cb.createQuery(Long.class);
+			Root<Author> root = query.from(Author.class);
+			query.select(root.<Long>get("id")).where(where.on(cb, root));
+			Deleted deleted = delete(session, session.createQuery(query).list());
+			deleted.statements++;
+			return deleted;
+		});
+	}
+
+	/**
+	 * The same, in the caller's session and transaction. Whatever the session holds of the deleted rows is
+	 * detached: the authors (their awards and books with them), the deleted books, and the books that lost
+	 * an author.
+	 */
+	public BulkDeleteResult deleteByIds(Session session, Collection<Long> authorIds) {
+		long start = System.nanoTime();
+		//the statements below must see what the session hasn't written yet
+		session.flush();
+		Deleted deleted = delete(session, authorIds);
+		ManagedEntities.detach(session, Author.class, authorIds);
+		ManagedEntities.detach(session, AuthorAward.class, deleted.awardIds);
+		ManagedEntities.detach(session, Book.class, deleted.linkedBooks);
+		return result(deleted, start);
+	}
+
+	private BulkDeleteResult inTransaction(Function<Session, Deleted> work) {
+		long start = System.nanoTime();
+		Session session = sessionFactory.openSession();
+		try {
+			session.beginTransaction();
+			Deleted deleted = work.apply(session);
+			session.getTransaction().commit();
+			return result(deleted, start);
+		} catch (RuntimeException e) {
+			if (session.getTransaction().isActive()) {
+				session.getTransaction().rollback();
+			}
+			throw e;
+		} finally {
+			session.close();
+		}
+	}
+
+	private static BulkDeleteResult result(Deleted deleted, long start) {
+		return new BulkDeleteResult(deleted.authors, deleted.awards, deleted.authorships, deleted.books,
+				deleted.statements, System.nanoTime() - start);
+	}
+
+	private static Deleted delete(Session session, Collection<Long> authorIds) {
+		Deleted deleted = new Deleted();
+		if (authorIds.isEmpty()) {
+			return deleted;
+		}
+		String ids = array(authorIds);
+		deleted.awardIds = select(deleted, session, "select id from author_award where author_id = any(cast(:ids as bigint[]))", ids);
+		List<Long> links = select(deleted, session, "select book_id from book_authorship where author_id = any(cast(:ids as bigint[]))", ids);
+		deleted.linkedBooks = new ArrayList<>(new LinkedHashSet<>(links));
+
+		deleted.awards = delete(deleted, session.createNativeQuery("delete from author_award where author_id = any(cast(:ids as bigint[]))")
+				.addSynchronizedEntityClass(AuthorAward.class), ids);
+		deleted.authorships = delete(deleted, session.createNativeQuery("delete from book_authorship where author_id = any(cast(:ids as bigint[]))")
+				.addSynchronizedQuerySpace("book_authorship"), ids);
+		//a book goes when the last of its authors does
+		deleted.books = delete(deleted, session.createNativeQuery("delete from book b where b.id = any(cast(:ids as bigint[])) "
+				+ "and not exists (select 1 from book_authorship ba where ba.book_id = b.id)")
+				.addSynchronizedEntityClass(Book.class), array(deleted.linkedBooks));
+		//their totals go with them (on delete cascade)
+		deleted.authors = delete(deleted, session.createNativeQuery("delete from author where id = any(cast(:ids as bigint[]))")
+				.addSynchronizedEntityClass(Author.class)
+				.addSynchronizedQuerySpace("author_award_total"), ids);
+		WriteTracker.wrote(session);
+		return deleted;
+	}
+
+	//one parameter however many ids: a PostgreSQL array literal, cast in the statement
+	private static String array(Collection<Long> ids) {
+		return ids.stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Long> select(Deleted deleted, Session session, String sql, String ids) {
+		deleted.statements++;
+		List<Number> rows = session.createNativeQuery(sql).setParameter("ids", ids).list();
+		return rows.stream().map(Number::longValue).collect(Collectors.toList());
+	}
+
+	private static int delete(Deleted deleted, NativeQuery<?> delete, String ids) {
+		deleted.statements++;
+		return delete.setParameter("ids", ids).executeUpdate();
+	}
+
+	private static class Deleted {
+		//what the session may hold of the deleted rows
+		List<Long> awardIds = new ArrayList<>();
+		List<Long> linkedBooks = new ArrayList<>();
+		int authors;
+		int awards;
+		int authorships;
+		int books;
+		int statements;
+	}
+}
@@ -0,0 +1,52 @@
+package main.bulk;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One author as it comes out of a catalog dump: a name, the titles of their books and their awards.
+ * Every record gets new rows; books are not matched against existing ones.
+ */
+public class AuthorRecord {
+
+	private final String name;
+	private final List<String> bookTitles;
+	private final List<Award> awards;
+
+	public AuthorRecord(String name, List<String> bookTitles, List<Award> awards) {
+		this.name = name;
+		this.bookTitles = bookTitles == null ? Collections.<String>emptyList() : bookTitles;
+		this.awards = awards == null ? Collections.<Award>emptyList() : awards;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public List<String> getBookTitles() {
+		return bookTitles;
+	}
+
+	public List<Award> getAwards() {
+		return awards;
+	}
+
+	public static class Award {
+
+		private final String description;
+		private final Long monetaryReward;
+
+		public Award(String description, Long monetaryReward) {
+			this.description = description;
+			this.monetaryReward = monetaryReward;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+
+		public Long getMonetaryReward() {
+			return monetaryReward;
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package main.bulk;
+
+import java.util.concurrent.TimeUnit;
+
+public class BulkDeleteResult {
+
+	private final long authors;
+	private final long awards;
+	private final long authorships;
+	private final long books;
+	private final int statements;
+	private final long elapsedNanos;
+
+	BulkDeleteResult(long authors, long awards, long authorships, long books, int statements, long elapsedNanos) {
+		this.authors = authors;
+		this.awards = awards;
+		this.authorships = authorships;
+		this.books = books;
+		this.statements = statements;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	public long getAuthors() {
+		return authors;
+	}
+
+	public long getAwards() {
+		return awards;
+	}
+
+	public long getAuthorships() {
+		return authorships;
+	}
+
+	/**
+	 * Only books nobody else wrote are deleted with their authors.
+	 */
+	public long getBooks() {
+		return books;
+	}
+
+	public long getRows() {
+		return authors + awards + authorships + books;
+	}
+
+	/**
+	 * Round trips to the database, the one looking up the ids included.
+	 */
+	public int getStatements() {
+		return statements;
+	}
+
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d rows (%d authors, %d awards, %d authorships, %d books) in %d statements, %dms",
+				getRows(), authors, awards, authorships, books, statements, getElapsedMillis());
+	}
+}
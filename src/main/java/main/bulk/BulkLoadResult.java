@@ -0,0 +1,54 @@
+package main.bulk;
+
+import java.util.concurrent.TimeUnit;
+
+public class BulkLoadResult {
+
+	private final long authors;
+	private final long books;
+	private final long authorships;
+	private final long awards;
+	private final long elapsedNanos;
+
+	BulkLoadResult(long authors, long books, long authorships, long awards, long elapsedNanos) {
+		this.authors = authors;
+		this.books = books;
+		this.authorships = authorships;
+		this.awards = awards;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	public long getAuthors() {
+		return authors;
+	}
+
+	public long getBooks() {
+		return books;
+	}
+
+	public long getAuthorships() {
+		return authorships;
+	}
+
+	public long getAwards() {
+		return awards;
+	}
+
+	public long getRows() {
+		return authors + books + authorships + awards;
+	}
+
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+	}
+
+	public double getRowsPerSecond() {
+		return elapsedNanos == 0 ? 0 : getRows() * 1e9 / elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d rows (%d authors, %d books, %d authorships, %d awards) in %dms, %.0f rows/s",
+				getRows(), authors, books, authorships, awards, getElapsedMillis(), getRowsPerSecond());
+	}
+}
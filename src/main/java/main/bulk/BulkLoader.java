@@ -0,0 +1,163 @@
+package main.bulk;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.hibernate.Cache;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import main.models.Author;
+import main.models.AuthorAward;
+import main.models.Book;
+import main.routing.WriteTracker;
+
+/**
+ * Loads catalog dumps with PostgreSQL's COPY instead of session.save().
+ * <p>
+ * Records are turned straight into CSV rows, no entities are built. A connection can only run one
+ * COPY at a time, so rows are collected per table for a chunk of records and then copied table by table
+ * in foreign key order. Memory is bounded by the chunk size, and the whole load is one transaction.
+ */
+@Component
+public class BulkLoader {
+
+	private final SessionFactory sessionFactory;
+	private final int chunkSize;
+
+	@Autowired
+	public BulkLoader(SessionFactory sessionFactory, @Value("${library.bulk.chunkSize:10000}") int chunkSize) {
+		this.sessionFactory = sessionFactory;
+		this.chunkSize = chunkSize;
+	}
+
+	public BulkLoadResult load(Stream<AuthorRecord> records) {
+		return load(records.iterator());
+	}
+
+	public BulkLoadResult load(Iterator<AuthorRecord> records) {
+		long start = System.nanoTime();
+		Session session = sessionFactory.openSession();
+		try {
+			session.beginTransaction();
+			long[] counts = session.doReturningWork(connection -> copy(connection, records));
+			WriteTracker.wrote(session);
+			session.getTransaction().commit();
+			evictCaches();
+			return new BulkLoadResult(counts[0], counts[1], counts[2], counts[3], System.nanoTime() - start);
+		} catch (RuntimeException e) {
+			if (session.getTransaction().isActive()) {
+				session.getTransaction().rollback();
+			}
+			throw e;
+		} finally {
+			session.close();
+		}
+	}
+
+	private long[] copy(Connection connection, Iterator<AuthorRecord> records) throws SQLException {
+		CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+		SequenceIds authorIds = new SequenceIds(connection, "author_seq");
+		SequenceIds bookIds = new SequenceIds(connection, "book_seq");
+		SequenceIds awardIds = new SequenceIds(connection, "author_award_seq");
+		Chunk chunk = new Chunk();
+		long[] counts = new long[4];
+		while (records.hasNext()) {
+			AuthorRecord record = records.next();
+			long authorId = authorIds.next();
+			chunk.authors.append(authorId).append(',');
+			csv(chunk.authors, record.getName()).append('\n');
+			for (String title : record.getBookTitles()) {
+				long bookId = bookIds.next();
+				chunk.books.append(bookId).append(',');
+				csv(chunk.books, title).append('\n');
+				chunk.authorships.append(bookId).append(',').append(authorId).append('\n');
+				counts[1]++;
+				counts[2]++;
+			}
+			long totalReward = 0;
+			for (AuthorRecord.Award award : record.getAwards()) {
+				chunk.awards.append(awardIds.next()).append(',').append(authorId).append(',');
+				csv(chunk.awards, award.getDescription()).append(',');
+				if (award.getMonetaryReward() != null) {
+					chunk.awards.append(award.getMonetaryReward());
+					totalReward += award.getMonetaryReward();
+				}
+				chunk.awards.append('\n');
+				counts[3]++;
+			}
+			//AwardTotalsListener never sees these awards
+			chunk.totals.append(authorId).append(',').append(totalReward).append(',').append(record.getAwards().size()).append('\n');
+			counts[0]++;
+			if (++chunk.records == chunkSize) {
+				chunk.copyTo(copyManager);
+				chunk = new Chunk();
+			}
+		}
+		chunk.copyTo(copyManager);
+		return counts;
+	}
+
+	private void evictCaches() {
+		//new rows can't be in the entity caches, but a cached query or collection may now be missing them.
+		Cache cache = sessionFactory.getCache();
+		cache.evictEntityData(Author.class);
+		cache.evictEntityData(Book.class);
+		cache.evictEntityData(AuthorAward.class);
+		cache.evictCollectionData("main.models.Author.books");
+		cache.evictCollectionData("main.models.Author.authorAward");
+		cache.evictCollectionData("main.models.Book.authors");
+		cache.evictQueryRegions();
+	}
+
+	//quoted so an empty string stays an empty string; unquoted nothing is NULL
+	private static StringBuilder csv(StringBuilder row, String value) {
+		if (value != null) {
+			row.append('"').append(value.replace("\"", "\"\"")).append('"');
+		}
+		return row;
+	}
+
+	private static class Chunk {
+		final StringBuilder authors = new StringBuilder();
+		final StringBuilder books = new StringBuilder();
+		final StringBuilder authorships = new StringBuilder();
+		final StringBuilder awards = new StringBuilder();
+		final StringBuilder totals = new StringBuilder();
+		int records;
+
+		void copyTo(CopyManager copyManager) throws SQLException {
+			//parents before children, the foreign keys are checked row by row
+			copy(copyManager, "author (id, auth_name)", authors);
+			copy(copyManager, "author_award_total (author_id, total_reward, award_count)", totals);
+			copy(copyManager, "book (id, title)", books);
+			copy(copyManager, "book_authorship (book_id, author_id)", authorships);
+			copy(copyManager, "author_award (id, author_id, award_desc, monetary_reward)", awards);
+		}
+
+		private static void copy(CopyManager copyManager, String table, StringBuilder rows) throws SQLException {
+			if (rows.length() == 0) {
+				return;
+			}
+			byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+			CopyIn copyIn = copyManager.copyIn("COPY " + table + " FROM STDIN WITH (FORMAT csv)");
+			try {
+				copyIn.writeToCopy(bytes, 0, bytes.length);
+				copyIn.endCopy();
+			} finally {
+				if (copyIn.isActive()) {
+					copyIn.cancelCopy();
+				}
+			}
+		}
+	}
+}
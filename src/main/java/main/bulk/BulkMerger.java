@@ -0,0 +1,106 @@
+package main.bulk;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.springframework.stereotype.Component;
+
+import main.models.Author;
+import main.models.AuthorAward;
+import main.models.Book;
+
+/**
+ * Merges many detached authors, with their books and awards, into a session.
+ * <p>
+ * session.merge() selects every detached instance it hasn't seen, one row at a time, and the cascade
+ * does the same for each book and award. Here everything the graphs refer to is loaded first, a chunk
+ * of ids per query, and only then is each author merged: merge finds its targets already managed and
+ * goes straight to copying state. The result is exactly what merging one by one gives.
+ * <p>
+ * Nothing is flushed; the updates go out as jdbc batches when the caller's transaction commits.
+ */
+@Component
+public class BulkMerger {
+
+	//in clause padding (see Main) takes this to 1024 parameters at most.
+	private static final int CHUNK_SIZE = 1000;
+
+	/**
+	 * @return the managed copies, in the order given
+	 */
+	public List<Author> mergeAll(Session session, Collection<Author> detached) {
+		Set<Long> authorIds = new LinkedHashSet<>();
+		Set<Long> bookIds = new LinkedHashSet<>();
+		Set<Long> awardIds = new LinkedHashSet<>();
+		for (Author author : detached) {
+			if (author.getId() != 0) {
+				authorIds.add(author.getId());
+			}
+			//an uninitialized collection is left alone by merge, so there's nothing to fetch for it
+			if (author.getBooks() != null && Hibernate.isInitialized(author.getBooks())) {
+				for (Book book : author.getBooks()) {
+					if (book.getId() != 0) {
+						bookIds.add(book.getId());
+					}
+				}
+			}
+			if (author.getAuthorAward() != null && Hibernate.isInitialized(author.getAuthorAward())) {
+				for (AuthorAward award : author.getAuthorAward()) {
+					if (award.getId() != 0) {
+						awardIds.add(award.getId());
+					}
+				}
+			}
+		}
+
+		for (List<Long> ids : chunks(authorIds)) {
+			List<Author> authors = session.createQuery("from Author a where a.id in (:ids)", Author.class)
+					.setParameterList("ids", ids)
+					.list();
+			if (!authors.isEmpty()) {
+				//both collections are subselect fetched, so this loads them for every author of the chunk
+				Hibernate.initialize(authors.get(0).getBooks());
+				Hibernate.initialize(authors.get(0).getAuthorAward());
+			}
+		}
+		//books and awards that aren't attached to their author yet, or belong to one outside the batch.
+		//merge replaces book.authors, which needs it initialized.
+		for (List<Long> ids : chunks(bookIds)) {
+			session.createQuery("select distinct b from Book b left join fetch b.authors where b.id in (:ids)", Book.class)
+					.setParameterList("ids", ids)
+					.list();
+		}
+		for (List<Long> ids : chunks(awardIds)) {
+			session.createQuery("from AuthorAward aw left join fetch aw.author where aw.id in (:ids)", AuthorAward.class)
+					.setParameterList("ids", ids)
+					.list();
+		}
+
+		List<Author> merged = new ArrayList<>(detached.size());
+		for (Author author : detached) {
+			merged.add((Author) session.merge(author));
+		}
+		return merged;
+	}
+
+	private static List<List<Long>> chunks(Set<Long> ids) {
+		List<List<Long>> chunks = new ArrayList<>();
+		List<Long> chunk = new ArrayList<>(CHUNK_SIZE);
+		for (Long id : ids) {
+			chunk.add(id);
+			if (chunk.size() == CHUNK_SIZE) {
+				chunks.add(chunk);
+				chunk = new ArrayList<>(CHUNK_SIZE);
+			}
+		}
+		if (!chunk.isEmpty()) {
+			chunks.add(chunk);
+		}
+		return chunks;
+	}
+}
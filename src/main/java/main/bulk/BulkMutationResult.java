@@ -0,0 +1,59 @@
+package main.bulk;
+
+import java.util.concurrent.TimeUnit;
+
+public class BulkMutationResult {
+
+	private final int rows;
+	private final int refreshed;
+	private final int detached;
+	private final int statements;
+	private final long elapsedNanos;
+
+	BulkMutationResult(int rows, int refreshed, int detached, int statements, long elapsedNanos) {
+		this.rows = rows;
+		this.refreshed = refreshed;
+		this.detached = detached;
+		this.statements = statements;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * Rows of the entity's own table that matched. Deleting authors removes more than that, see {@link AuthorDeleter}.
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Instances the session held that were reloaded with the new values.
+	 */
+	public int getRefreshed() {
+		return refreshed;
+	}
+
+	/**
+	 * Instances the session held that were evicted, the deleted ones and those whose collections changed.
+	 */
+	public int getDetached() {
+		return detached;
+	}
+
+	/**
+	 * Round trips to the database: looking up the ids, the changes, and one select per refreshed instance
+	 * (a refreshed author also reloads the collections it had loaded, which isn't counted).
+	 */
+	public int getStatements() {
+		return statements;
+	}
+
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d rows in %d statements (%d refreshed, %d detached), %dms",
+				rows, statements, refreshed, detached, getElapsedMillis());
+	}
+}
@@ -0,0 +1,226 @@
+package main.bulk;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import javax.persistence.LockModeType;
+import javax.persistence.TransactionRequiredException;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.google.common.collect.Iterables;
+import com.google.common.primitives.Primitives;
+
+import main.models.Author;
+import main.models.AuthorAward;
+import main.models.Book;
+import main.routing.WriteTracker;
+import main.totals.AwardTotalsListener;
+
+/**
+ * Set-based updates and deletes of authors, books and awards, by a criteria predicate, without loading
+ * the entities.
+ * <p>
+ * The matching ids are selected (and locked) first, then the rows are changed by id, a chunk per
+ * statement, so exactly the rows that were looked up are changed. The ids are what keeps the caller's
+ * session honest: managed instances of updated rows are refreshed, instances of deleted rows and the
+ * owners of collections that lost an element are detached. Hibernate's own bulk cleanup evicts the
+ * entity and collection regions of the tables written, and the query cache. Award totals are recomputed
+ * for the authors whose awards changed, and written for those that had no total yet.
+ * <p>
+ * Runs in the caller's transaction; pending changes in the session are flushed first. Only basic
+ * attributes can be updated, moving awards or books between authors still goes through the entities.
+ * Deleting authors is {@link AuthorDeleter}'s job, it knows about their books and awards.
+ */
+@Component
+public class BulkMutator {
+
+	//in clause padding (see Main) takes this to 1024 parameters at most.
+	private static final int CHUNK_SIZE = 1000;
+
+	private final AuthorDeleter authorDeleter;
+
+	@Autowired
+	public BulkMutator(AuthorDeleter authorDeleter) {
+		this.authorDeleter = authorDeleter;
+	}
+
+	/**
+	 * @param values attribute name to new value, e.g. {@code "name" -> "Anonymous"}
+	 */
+	public <T> BulkMutationResult update(Session session, Class<T> type, Where<T> where, Map<String, ?> values) {
+		long start = System.nanoTime();
+		checkValues(session, type, values);
+		requireTransaction(session);
+		session.flush();
+		List<Long> ids = lockIds(session, type, where);
+		int statements = 1;
+
+		CriteriaBuilder cb = session.getCriteriaBuilder();
+		int rows = 0;
+		for (List<Long> chunk : Iterables.partition(ids, CHUNK_SIZE)) {
+			CriteriaUpdate<T> update = cb.createCriteriaUpdate(type);
+			Root<T> root = update.from(type);
+			values.forEach(update::set);
+			update.where(root.get("id").in(chunk));
+			rows += session.createQuery(update).executeUpdate();
+			statements++;
+		}
+		if (type == AuthorAward.class && values.containsKey("monetaryReward") && !ids.isEmpty()) {
+			statements += chunks(ids) + recomputeTotals(session, awardAuthors(session, ids));
+		}
+
+		int refreshed = 0;
+		for (Long id : ids) {
+			Object managed = ManagedEntities.find(session, type, id);
+			//an uninitialized proxy loads the new values anyway
+			if (managed != null && session.contains(managed) && Hibernate.isInitialized(managed)) {
+				session.refresh(managed);
+				refreshed++;
+				statements++;
+			}
+		}
+		WriteTracker.wrote(session);
+		return new BulkMutationResult(rows, refreshed, 0, statements, System.nanoTime() - start);
+	}
+
+	public <T> BulkMutationResult delete(Session session, Class<T> type, Where<T> where) {
+		long start = System.nanoTime();
+		requireTransaction(session);
+		session.flush();
+		List<Long> ids = lockIds(session, type, where);
+		if (type == Author.class) {
+			int managed = countManaged(session, Author.class, ids);
+			BulkDeleteResult deleted = authorDeleter.deleteByIds(session, ids);
+			return new BulkMutationResult((int) deleted.getAuthors(), 0, managed, deleted.getStatements() + 1,
+					System.nanoTime() - start);
+		}
+
+		int statements = 1;
+		int detached = ManagedEntities.detach(session, type, ids);
+		List<Long> owners = new ArrayList<>();
+		if (type == Book.class) {
+			owners = bookAuthors(session, ids);
+			statements += chunks(ids);
+			for (List<Long> chunk : Iterables.partition(ids, CHUNK_SIZE)) {
+				session.createNativeQuery("delete from book_authorship where book_id in (:ids)")
+						.addSynchronizedQuerySpace("book_authorship")
+						.setParameterList("ids", chunk)
+						.executeUpdate();
+				statements++;
+			}
+		} else if (type == AuthorAward.class) {
+			owners = awardAuthors(session, ids);
+			statements += chunks(ids);
+		}
+
+		CriteriaBuilder cb = session.getCriteriaBuilder();
+		int rows = 0;
+		for (List<Long> chunk : Iterables.partition(ids, CHUNK_SIZE)) {
+			CriteriaDelete<T> delete = cb.createCriteriaDelete(type);
+			delete.where(delete.from(type).get("id").in(chunk));
+			rows += session.createQuery(delete).executeUpdate();
+			statements++;
+		}
+		if (type == AuthorAward.class && !owners.isEmpty()) {
+			statements += recomputeTotals(session, owners);
+		}
+		//their collections still hold the deleted rows
+		detached += ManagedEntities.detach(session, Author.class, owners);
+		WriteTracker.wrote(session);
+		return new BulkMutationResult(rows, 0, detached, statements, System.nanoTime() - start);
+	}
+
+	private static <T> void checkValues(Session session, Class<T> type, Map<String, ?> values) {
+		if (values.isEmpty()) {
+			throw new IllegalArgumentException("Nothing to update");
+		}
+		EntityType<T> entity = session.getMetamodel().entity(type);
+		values.forEach((name, value) -> {
+			Attribute<? super T, ?> attribute = entity.getAttribute(name);
+			if (attribute.isAssociation() || attribute.isCollection() || ((SingularAttribute<?, ?>) attribute).isId()) {
+				throw new IllegalArgumentException("Only basic attributes can be bulk updated, not " + type.getSimpleName() + "." + name);
+			}
+			if (value == null ? attribute.getJavaType().isPrimitive() : !Primitives.wrap(attribute.getJavaType()).isInstance(value)) {
+				throw new IllegalArgumentException(type.getSimpleName() + "." + name + " can't be set to " + value);
+			}
+		});
+	}
+
+	private static void requireTransaction(Session session) {
+		if (!session.getTransaction().isActive()) {
+			throw new TransactionRequiredException("Bulk updates and deletes run in the caller's transaction");
+		}
+	}
+
+	//ordered, so two bulk changes over the same rows lock them in the same order
+	private static <T> List<Long> lockIds(Session session, Class<T> type, Where<T> where) {
+		CriteriaBuilder cb = session.getCriteriaBuilder();
+		CriteriaQuery<Long> query = cb.createQuery(Long.class);
+		Root<T> root = query.from(type);
+		query.select(root.<Long>get("id")).where(where.on(cb, root)).orderBy(cb.asc(root.get("id")));
+		return session.createQuery(query).setLockMode(LockModeType.PESSIMISTIC_WRITE).list();
+	}
+
+	private static List<Long> awardAuthors(Session session, List<Long> awardIds) {
+		return distinct(session, "select distinct aw.author.id from AuthorAward aw where aw.id in (:ids)", awardIds);
+	}
+
+	private static List<Long> bookAuthors(Session session, List<Long> bookIds) {
+		return distinct(session, "select distinct a.id from Author a join a.books b where b.id in (:ids)", bookIds);
+	}
+
+	//in id order, like AwardTotalsListener writes the totals
+	private static List<Long> distinct(Session session, String hql, List<Long> ids) {
+		TreeSet<Long> found = new TreeSet<>();
+		for (List<Long> chunk : Iterables.partition(ids, CHUNK_SIZE)) {
+			found.addAll(session.createQuery(hql, Long.class).setParameterList("ids", chunk).list());
+		}
+		return new ArrayList<>(found);
+	}
+
+	private static int chunks(List<Long> ids) {
+		return (ids.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+	}
+
+	//an author without a row yet (from before the table, or written with plain sql) gets one
+	private static int recomputeTotals(Session session, Collection<Long> authorIds) {
+		session.doWork(connection -> {
+			try (PreparedStatement recount = connection.prepareStatement(AwardTotalsListener.RECOUNT)) {
+				for (Long id : authorIds) {
+					recount.setLong(1, id);
+					recount.setLong(2, id);
+					recount.addBatch();
+				}
+				recount.executeBatch();
+			}
+		});
+		return 1;
+	}
+
+	private static int countManaged(Session session, Class<?> type, List<Long> ids) {
+		int managed = 0;
+		for (Long id : ids) {
+			Object entity = ManagedEntities.find(session, type, id);
+			if (entity != null && session.contains(entity)) {
+				managed++;
+			}
+		}
+		return managed;
+	}
+}
@@ -0,0 +1,46 @@
+package main.bulk;
+
+import java.util.Collection;
+
+import org.hibernate.Session;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Finds what a session holds of rows that were changed with plain statements.
+ */
+final class ManagedEntities {
+
+	private ManagedEntities() {
+	}
+
+	/**
+	 * @return the managed instance or uninitialized proxy for the row, or null if the session never saw it
+	 */
+	static Object find(Session session, Class<?> type, Long id) {
+		SessionImplementor source = session.unwrap(SessionImplementor.class);
+		EntityPersister persister = source.getFactory().getMetamodel().entityPersister(type);
+		EntityKey key = source.generateEntityKey(id, persister);
+		PersistenceContext context = source.getPersistenceContext();
+		Object entity = context.getEntity(key);
+		return entity != null ? entity : context.getProxy(key);
+	}
+
+	/**
+	 * Evicts the instances of these rows; the evict cascades like it does for session.evict().
+	 * @return how many the session held
+	 */
+	static int detach(Session session, Class<?> type, Collection<Long> ids) {
+		int detached = 0;
+		for (Long id : ids) {
+			Object entity = find(session, type, id);
+			if (entity != null && session.contains(entity)) {
+				session.evict(entity);
+				detached++;
+			}
+		}
+		return detached;
+	}
+}
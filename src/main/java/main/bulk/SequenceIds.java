@@ -0,0 +1,72 @@
+package main.bulk;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Hands out ids from one of the entity sequences the same way Hibernate's pooled optimizer does:
+ * a sequence value v reserves the ids v-49..v. That way ids from here never collide with ids
+ * Hibernate hands out, and many blocks are reserved per round trip.
+ * <p>
+ * That only holds for sequences that start at 50, as buildtables.sql creates them. On a sequence that
+ * starts at 1, Hibernate's first nextval returning 1 makes it take a second one and hand out 1 up to
+ * that, which overlaps whatever was reserved in between. Such sequences are refused.
+ */
+class SequenceIds {
+
+	//has to match allocationSize on the entities and the increment in buildtables.sql
+	static final int ALLOCATION_SIZE = 50;
+	private static final int BLOCKS_PER_FETCH = 100;
+
+	private final Connection connection;
+	private final String sequence;
+	private final long[] blocks = new long[BLOCKS_PER_FETCH];
+	private int blockCount;
+	private int blockIndex;
+	private long next;
+	private long hi = -1;
+
+	SequenceIds(Connection connection, String sequence) throws SQLException {
+		this.connection = connection;
+		this.sequence = sequence;
+		try (PreparedStatement st = connection.prepareStatement("select cast(start_value as bigint) from information_schema.sequences "
+				+ "where sequence_schema = current_schema() and sequence_name = ?")) {
+			st.setString(1, sequence);
+			try (ResultSet rs = st.executeQuery()) {
+				if (!rs.next()) {
+					throw new IllegalStateException("No sequence " + sequence);
+				}
+				if (rs.getLong(1) < ALLOCATION_SIZE) {
+					//the start value only matters to a sequence that was never used, so changing it is safe either way
+					throw new IllegalStateException(sequence + " starts below " + ALLOCATION_SIZE
+							+ ", run 'alter sequence " + sequence + " start with " + ALLOCATION_SIZE + "' before bulk loading");
+				}
+			}
+		}
+	}
+
+	long next() throws SQLException {
+		if (next > hi) {
+			if (blockIndex == blockCount) {
+				fetchBlocks();
+			}
+			hi = blocks[blockIndex++];
+			next = hi - ALLOCATION_SIZE + 1;
+		}
+		return next++;
+	}
+
+	private void fetchBlocks() throws SQLException {
+		blockCount = 0;
+		blockIndex = 0;
+		try (PreparedStatement st = connection.prepareStatement(
+				"select nextval('" + sequence + "') from generate_series(1, " + BLOCKS_PER_FETCH + ")");
+				ResultSet rs = st.executeQuery()) {
+			while (rs.next()) {
+				blocks[blockCount++] = rs.getLong(1);
+			}
+		}
+	}
+}
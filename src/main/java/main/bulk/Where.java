@@ -0,0 +1,13 @@
+package main.bulk;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+/**
+ * A condition on the rows to change, built against the root it is given.
+ */
+@FunctionalInterface
+public interface Where<T> {
+	Predicate on(CriteriaBuilder cb, Root<T> root);
+}
@@ -0,0 +1,138 @@
+package main.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes every author as one line of JSON: id, name, the ids of their books and their awards.
+ * <p>
+ * Nothing is loaded as an entity. Three forward-only cursors (authors, author/book pairs and awards,
+ * all ordered by author id) are walked side by side, so memory stays flat however big the tables are.
+ * PostgreSQL only streams a cursor inside a transaction, which is why one is opened even though
+ * nothing is written.
+ */
+@Component
+public class LibraryExporter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final SessionFactory sessionFactory;
+	private final int fetchSize;
+
+	@Autowired
+	public LibraryExporter(SessionFactory sessionFactory, @Value("${library.export.fetchSize:1000}") int fetchSize) {
+		this.sessionFactory = sessionFactory;
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * @return the number of authors written. The channel is flushed but left open.
+	 */
+	public long export(WritableByteChannel channel) throws IOException {
+		StatelessSession session = sessionFactory.openStatelessSession();
+		session.beginTransaction();
+		try (ScrollableResults authors = scroll(session, "select a.id, a.name from Author a order by a.id");
+				ScrollableResults books = scroll(session, "select a.id, b.id from Author a join a.books b order by a.id, b.id");
+				ScrollableResults awards = scroll(session, "select aw.author.id, aw.id, aw.awardDescription from AuthorAward aw "
+						+ "where aw.author is not null order by aw.author.id, aw.id")) {
+			Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE), BUFFER_SIZE);
+			long written = 0;
+			boolean moreBooks = books.next();
+			boolean moreAwards = awards.next();
+			while (authors.next()) {
+				long authorId = (Long) authors.get(0);
+				out.write("{\"id\":");
+				out.write(Long.toString(authorId));
+				out.write(",\"name\":");
+				writeString(out, (String) authors.get(1));
+
+				out.write(",\"bookIds\":[");
+				boolean first = true;
+				while (moreBooks && (Long) books.get(0) == authorId) {
+					if (!first) {
+						out.write(',');
+					}
+					out.write(books.get(1).toString());
+					first = false;
+					moreBooks = books.next();
+				}
+
+				out.write("],\"awards\":[");
+				first = true;
+				while (moreAwards && (Long) awards.get(0) == authorId) {
+					if (!first) {
+						out.write(',');
+					}
+					out.write("{\"id\":");
+					out.write(awards.get(1).toString());
+					out.write(",\"description\":");
+					writeString(out, (String) awards.get(2));
+					out.write('}');
+					first = false;
+					moreAwards = awards.next();
+				}
+				out.write("]}\n");
+				written++;
+			}
+			out.flush();
+			return written;
+		} finally {
+			session.getTransaction().rollback();
+			session.close();
+		}
+	}
+
+	private ScrollableResults scroll(StatelessSession session, String hql) {
+		return session.createQuery(hql)
+				.setFetchSize(fetchSize)
+				.setReadOnly(true)
+				.scroll(ScrollMode.FORWARD_ONLY);
+	}
+
+	private static void writeString(Writer out, String value) throws IOException {
+		if (value == null) {
+			out.write("null");
+			return;
+		}
+		out.write('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				out.write("\\\"");
+				break;
+			case '\\':
+				out.write("\\\\");
+				break;
+			case '\n':
+				out.write("\\n");
+				break;
+			case '\r':
+				out.write("\\r");
+				break;
+			case '\t':
+				out.write("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					out.write(String.format("\\u%04x", (int) c));
+				} else {
+					out.write(c);
+				}
+			}
+		}
+		out.write('"');
+	}
+}
@@ -0,0 +1,92 @@
+package main.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram with power-of-two buckets. Bucket i holds values in [2^(i-1), 2^i),
+ * so percentiles are accurate to within a factor of two - plenty for spotting where time goes.
+ * The unit is whatever the caller records in.
+ */
+public class LatencyHistogram {
+
+	private static final int BUCKETS = 48;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long value) {
+		long v = Math.max(0, value);
+		counts.incrementAndGet(bucketOf(v));
+		count.increment();
+		sum.add(v);
+		long currentMax;
+		while (v > (currentMax = max.get()) && !max.compareAndSet(currentMax, v)) {
+			//somebody else got there first, try again
+		}
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the upper bound of the bucket the percentile falls into, capped at the max seen
+	 */
+	public long getPercentile(double percentile) {
+		long n = count.sum();
+		if (n == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(upperBoundOf(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Bucket counts keyed by upper bound, smallest first. Empty buckets are included.
+	 */
+	public long[][] getBuckets() {
+		long[][] buckets = new long[BUCKETS][];
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i] = new long[] { upperBoundOf(i), counts.get(i) };
+		}
+		return buckets;
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	private static int bucketOf(long value) {
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+	}
+
+	private static long upperBoundOf(int bucket) {
+		return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+	}
+}
@@ -0,0 +1,151 @@
+package main.metrics;
+
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * What the SessionFactory and its connection pool are up to, published over JMX as main:type=LibraryStatistics.
+ */
+@Component
+@ManagedResource(objectName = "main:type=LibraryStatistics", description = "Hibernate and connection pool statistics")
+public class LibraryStatistics {
+
+	private final Statistics statistics;
+	private final PoolMetrics poolMetrics;
+
+	@Autowired
+	public LibraryStatistics(SessionFactory sessionFactory, PoolMetrics poolMetrics) {
+		this.statistics = sessionFactory.getStatistics();
+		this.poolMetrics = poolMetrics;
+	}
+
+	// entities and collections
+
+	@ManagedAttribute
+	public long getEntityLoadCount() {
+		return statistics.getEntityLoadCount();
+	}
+
+	@ManagedAttribute
+	public long getEntityFetchCount() {
+		return statistics.getEntityFetchCount();
+	}
+
+	@ManagedAttribute
+	public long getEntityInsertCount() {
+		return statistics.getEntityInsertCount();
+	}
+
+	@ManagedAttribute
+	public long getEntityUpdateCount() {
+		return statistics.getEntityUpdateCount();
+	}
+
+	@ManagedAttribute
+	public long getEntityDeleteCount() {
+		return statistics.getEntityDeleteCount();
+	}
+
+	@ManagedAttribute
+	public long getCollectionLoadCount() {
+		return statistics.getCollectionLoadCount();
+	}
+
+	@ManagedAttribute
+	public long getCollectionFetchCount() {
+		return statistics.getCollectionFetchCount();
+	}
+
+	@ManagedAttribute
+	public long getFlushCount() {
+		return statistics.getFlushCount();
+	}
+
+	@ManagedAttribute
+	public long getPrepareStatementCount() {
+		return statistics.getPrepareStatementCount();
+	}
+
+	// caches
+
+	@ManagedAttribute
+	public double getSecondLevelCacheHitRatio() {
+		return ratio(statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount());
+	}
+
+	@ManagedAttribute
+	public double getQueryCacheHitRatio() {
+		return ratio(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount());
+	}
+
+	// queries
+
+	@ManagedAttribute
+	public long getQueryExecutionCount() {
+		return statistics.getQueryExecutionCount();
+	}
+
+	@ManagedAttribute
+	public long getQueryExecutionMaxTime() {
+		return statistics.getQueryExecutionMaxTime();
+	}
+
+	@ManagedAttribute
+	public String getQueryExecutionMaxTimeQueryString() {
+		return statistics.getQueryExecutionMaxTimeQueryString();
+	}
+
+	@ManagedOperation(description = "The queries with the worst 99th percentile latency, worst first")
+	public String[] slowestQueries(int limit) {
+		List<String> slowest = queryLatency().getSlowestQueries(limit);
+		return slowest.toArray(new String[slowest.size()]);
+	}
+
+	// connection pool
+
+	@ManagedAttribute
+	public int getActiveConnections() {
+		return poolMetrics.getActiveConnections();
+	}
+
+	@ManagedAttribute
+	public int getIdleConnections() {
+		return poolMetrics.getIdleConnections();
+	}
+
+	@ManagedAttribute
+	public int getThreadsAwaitingConnection() {
+		return poolMetrics.getPendingThreads();
+	}
+
+	@ManagedAttribute
+	public long getConnectionTimeouts() {
+		return poolMetrics.getTimeouts();
+	}
+
+	@ManagedAttribute
+	public long getConnectionAcquireMicrosP99() {
+		return poolMetrics.getAcquireMicros().getPercentile(99);
+	}
+
+	@ManagedOperation
+	public void clear() {
+		statistics.clear();
+	}
+
+	public QueryLatencyStatistics queryLatency() {
+		return (QueryLatencyStatistics) statistics;
+	}
+
+	private static double ratio(long hits, long misses) {
+		long total = hits + misses;
+		return total == 0 ? 0 : (double) hits / total;
+	}
+}
@@ -0,0 +1,76 @@
+package main.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/**
+ * What the connection pool is doing: how many connections are busy or idle, how many threads are
+ * waiting for one, how long they waited and how often they gave up. Hand it to one pool via
+ * {@code HikariConfig.setMetricsTrackerFactory}.
+ */
+public class PoolMetrics implements MetricsTrackerFactory {
+
+	private final LatencyHistogram acquireMicros = new LatencyHistogram();
+	private final LatencyHistogram usageMillis = new LatencyHistogram();
+	private final LongAdder timeouts = new LongAdder();
+	private volatile PoolStats poolStats;
+
+	@Override
+	public IMetricsTracker create(String poolName, PoolStats poolStats) {
+		this.poolStats = poolStats;
+		return new IMetricsTracker() {
+			@Override
+			public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+				acquireMicros.record(TimeUnit.NANOSECONDS.toMicros(elapsedAcquiredNanos));
+			}
+
+			@Override
+			public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+				usageMillis.record(elapsedBorrowedMillis);
+			}
+
+			@Override
+			public void recordConnectionTimeout() {
+				timeouts.increment();
+			}
+		};
+	}
+
+	public int getActiveConnections() {
+		return poolStats == null ? 0 : poolStats.getActiveConnections();
+	}
+
+	public int getIdleConnections() {
+		return poolStats == null ? 0 : poolStats.getIdleConnections();
+	}
+
+	public int getTotalConnections() {
+		return poolStats == null ? 0 : poolStats.getTotalConnections();
+	}
+
+	public int getPendingThreads() {
+		return poolStats == null ? 0 : poolStats.getPendingThreads();
+	}
+
+	public long getTimeouts() {
+		return timeouts.sum();
+	}
+
+	/**
+	 * Time spent waiting for a connection, in microseconds.
+	 */
+	public LatencyHistogram getAcquireMicros() {
+		return acquireMicros;
+	}
+
+	/**
+	 * Time a connection was held before being handed back, in milliseconds.
+	 */
+	public LatencyHistogram getUsageMillis() {
+		return usageMillis;
+	}
+}
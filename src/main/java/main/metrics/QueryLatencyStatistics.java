@@ -0,0 +1,98 @@
+package main.metrics;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.StatisticsImpl;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.hibernate.stat.spi.StatisticsImplementor;
+import org.jboss.logging.Logger;
+
+/**
+ * Hibernate's own statistics plus a latency histogram per HQL/criteria query string and a log line
+ * for every query slower than a threshold. Hibernate already measures each query to keep its
+ * min/avg/max, this just keeps the distribution too.
+ */
+public class QueryLatencyStatistics extends StatisticsImpl {
+
+	private static final Logger LOG = Logger.getLogger(QueryLatencyStatistics.class);
+
+	//Queries with inlined literals would otherwise grow this forever.
+	private static final int MAX_TRACKED_QUERIES = 500;
+
+	private final long slowQueryMillis;
+	private final Map<String, LatencyHistogram> queryMillis = new ConcurrentHashMap<>();
+
+	public QueryLatencyStatistics(SessionFactoryImplementor sessionFactory, long slowQueryMillis) {
+		super(sessionFactory);
+		this.slowQueryMillis = slowQueryMillis;
+	}
+
+	@Override
+	public void queryExecuted(String hql, int rows, long time) {
+		super.queryExecuted(hql, rows, time);
+		LatencyHistogram histogram = queryMillis.get(hql);
+		if (histogram == null && queryMillis.size() < MAX_TRACKED_QUERIES) {
+			histogram = queryMillis.computeIfAbsent(hql, q -> new LatencyHistogram());
+		}
+		if (histogram != null) {
+			histogram.record(time);
+		}
+		if (slowQueryMillis > 0 && time >= slowQueryMillis) {
+			LOG.warnf("Slow query (%d ms, %d rows): %s", time, rows, hql);
+		}
+	}
+
+	/**
+	 * Execution times in milliseconds, or null if the query never ran (or arrived after the limit was reached).
+	 */
+	public LatencyHistogram getQueryLatency(String hql) {
+		return queryMillis.get(hql);
+	}
+
+	/**
+	 * The queries with the worst 99th percentile, worst first.
+	 */
+	public List<String> getSlowestQueries(int limit) {
+		return queryMillis.entrySet().stream()
+				.sorted(Comparator.comparingLong((Map.Entry<String, LatencyHistogram> e) -> e.getValue().getPercentile(99)).reversed())
+				.limit(limit)
+				.map(e -> String.format("p50=%dms p99=%dms max=%dms count=%d %s", e.getValue().getPercentile(50),
+						e.getValue().getPercentile(99), e.getValue().getMax(), e.getValue().getCount(), e.getKey()))
+				.collect(Collectors.toList());
+	}
+
+	public long getSlowQueryMillis() {
+		return slowQueryMillis;
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		//StatisticsImpl clears itself from its constructor, before this class has its map
+		if (queryMillis != null) {
+			queryMillis.clear();
+		}
+	}
+
+	/**
+	 * Hand an instance to hibernate.stats.factory.
+	 */
+	public static class Factory implements StatisticsFactory {
+
+		private final long slowQueryMillis;
+
+		public Factory(long slowQueryMillis) {
+			this.slowQueryMillis = slowQueryMillis;
+		}
+
+		@Override
+		public StatisticsImplementor buildStatistics(SessionFactoryImplementor sessionFactory) {
+			return new QueryLatencyStatistics(sessionFactory, slowQueryMillis);
+		}
+	}
+}
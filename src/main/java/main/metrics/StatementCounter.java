@@ -0,0 +1,42 @@
+package main.metrics;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Counts the jdbc round trips a session makes. A batch counts once, no matter how many rows are in it.
+ * Attach it with {@code sessionFactory.withOptions().eventListeners(counter).openSession()}.
+ */
+public class StatementCounter extends BaseSessionEventListener {
+
+	private static final long serialVersionUID = 1L;
+
+	private int statements;
+	private int batches;
+
+	@Override
+	public void jdbcExecuteStatementStart() {
+		statements++;
+	}
+
+	@Override
+	public void jdbcExecuteBatchStart() {
+		batches++;
+	}
+
+	public int getStatements() {
+		return statements;
+	}
+
+	public int getBatches() {
+		return batches;
+	}
+
+	public int getRoundTrips() {
+		return statements + batches;
+	}
+
+	public void reset() {
+		statements = 0;
+		batches = 0;
+	}
+}
@@ -1,7 +1,9 @@
 package main.models;
 
+import java.util.HashSet;
 import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -9,29 +11,74 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
+import javax.persistence.NamedNativeQuery;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
+import javax.persistence.QueryHint;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.QueryHints;
+
 @Entity
-@Table(name = "author")
+@Cacheable
+@DynamicUpdate
+@Table(name = "author", indexes = { @Index(name = "author_name_idx", columnList = "auth_name, id") })
+//Named queries are parsed once when the SessionFactory starts. The *After ones are keyset pages: they seek
+//past the last row of the previous page through an index instead of counting off rows, so page 10,000
+//costs what page 1 does. A seek over two columns has to be a row comparison; "name > x or (name = x and
+//id > y)" can't be one index range. The counts are subqueries: size() in a select clause is an aggregate
+//over a join, which would need a group by and multiplies one collection by the other.
+@NamedQueries({
+	//name lookups go through the query cache; any write to author invalidates it.
+	@NamedQuery(name = "Author.byName", query = "from Author a where a.name = :name order by a.id", hints = {
+			@QueryHint(name = QueryHints.CACHEABLE, value = "true"),
+			@QueryHint(name = QueryHints.CACHE_REGION, value = "authorsByName") }),
+	@NamedQuery(name = "Author.byNameAfter", query = "from Author a where a.name = :name and a.id > :afterId order by a.id"),
+	@NamedQuery(name = "Author.summaries", query = "select new main.repository.AuthorSummary(a.id, a.name, "
+			+ "(select count(b) from Author ab join ab.books b where ab = a), "
+			+ "(select count(aw) from AuthorAward aw where aw.author = a)) "
+			+ "from Author a order by a.name, a.id"),
+	@NamedQuery(name = "Author.summariesAfter", query = "select new main.repository.AuthorSummary(a.id, a.name, "
+			+ "(select count(b) from Author ab join ab.books b where ab = a), "
+			+ "(select count(aw) from AuthorAward aw where aw.author = a)) "
+			+ "from Author a where (a.name, a.id) > (:afterName, :afterId) order by a.name, a.id")
+})
+//PostgreSQL only: with the "C" collation the like prefix, the seek and the order by are all one range
+//scan of author_lower_name_idx. Under a linguistic collation none of them could use the index.
+@NamedNativeQuery(name = "Author.byNamePrefixAfter", resultClass = Author.class, query = "select * from author "
+		+ "where lower(auth_name) collate \"C\" like :prefix escape '!' "
+		+ "and (lower(auth_name) collate \"C\", id) > (lower(:afterName), :afterId) "
+		+ "order by lower(auth_name) collate \"C\", id")
 public class Author {
 	
 	@Id
-	@GeneratedValue(strategy=GenerationType.IDENTITY)
+	@GeneratedValue(strategy=GenerationType.SEQUENCE, generator = "author_seq")
+	@SequenceGenerator(name = "author_seq", sequenceName = "author_seq", allocationSize = 50)
 	@Column(name = "id")
 	private long id;
 	
-	@OneToMany(cascade = {CascadeType.ALL}, fetch = FetchType.LAZY)
-	@JoinColumn(name = "author_id")
+	//AuthorAward.author owns author_id, otherwise every award insert is followed by an update of its key.
+	//touching one author's awards loads the awards of every author that came back from the same query.
+	@OneToMany(mappedBy = "author", cascade = {CascadeType.ALL}, fetch = FetchType.LAZY)
+	@Fetch(FetchMode.SUBSELECT)
 	private Set<AuthorAward> authorAward;
 
 	@ManyToMany(cascade = { CascadeType.ALL }, fetch = FetchType.LAZY)
+	@Fetch(FetchMode.SUBSELECT)
 	@JoinTable (name = "book_authorship",
 		joinColumns = { @JoinColumn(name = "author_id") },
-		inverseJoinColumns = { @JoinColumn(name = "book_id") })
+		inverseJoinColumns = { @JoinColumn(name = "book_id") },
+		indexes = { @Index(name = "book_authorship_book_idx", columnList = "book_id, author_id") })
 	private Set<Book> books;
 	
 	public Set<AuthorAward> getAuthorAward() {
@@ -46,10 +93,31 @@ public class Author {
 		return books;
 	}
 
+	//Replacing the set of a persistent author makes hibernate delete every book_authorship row and insert them
+	//all again. To change one link, use addBook/removeBook (or change getBooks() in place) - that's one row each.
 	public void setBooks(Set<Book> books) {
 		this.books = books;
 	}
 
+	public void addBook(Book book) {
+		if (books == null) {
+			books = new HashSet<>();
+		}
+		books.add(book);
+		if (book.getAuthors() != null && Hibernate.isInitialized(book.getAuthors())) {
+			book.getAuthors().add(this);
+		}
+	}
+
+	public void removeBook(Book book) {
+		if (books != null) {
+			books.remove(book);
+		}
+		if (book.getAuthors() != null && Hibernate.isInitialized(book.getAuthors())) {
+			book.getAuthors().remove(this);
+		}
+	}
+
 	@Column(name = "auth_name")
 	private String name;
 
@@ -69,44 +137,21 @@ public class Author {
 		this.name = name;
 	}
 
+	//Two instances are equal when they are the same row; a transient instance (id 0) is only equal to itself.
+	//The hash can't depend on the id, persist hands that out after the instance may already be in a set,
+	//and it must never touch a lazy association. So it's the same for every Author.
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((authorAward == null) ? 0 : authorAward.hashCode());
-		result = prime * result + ((books == null) ? 0 : books.hashCode());
-		result = prime * result + (int) (id ^ (id >>> 32));
-		result = prime * result + ((name == null) ? 0 : name.hashCode());
-		return result;
+		return Author.class.hashCode();
 	}
 
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
 			return true;
-		if (obj == null)
-			return false;
-		if (getClass() != obj.getClass())
+		if (!(obj instanceof Author))
 			return false;
 		Author other = (Author) obj;
-		if (authorAward == null) {
-			if (other.authorAward != null)
-				return false;
-		} else if (!authorAward.equals(other.authorAward))
-			return false;
-		if (books == null) {
-			if (other.books != null)
-				return false;
-		} else if (!books.equals(other.books))
-			return false;
-		if (id != other.id)
-			return false;
-		if (name == null) {
-			if (other.name != null)
-				return false;
-		} else if (!name.equals(other.name))
-			return false;
-		return true;
+		return id != 0 && id == other.getId();
 	}
-	
 }
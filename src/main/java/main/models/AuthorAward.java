@@ -1,28 +1,47 @@
 package main.models;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.SelectBeforeUpdate;
+
 @Entity
-@Table(name = "Author_Award")
+@Cacheable
+//updates only set the columns that changed, so the lazy description isn't loaded just to be written back.
+@DynamicUpdate
+//session.update() of a detached award reads the row first, AwardTotalsListener needs its previous author and reward.
+@SelectBeforeUpdate
+@Table(name = "Author_Award", indexes = { @Index(name = "author_award_author_idx", columnList = "author_id") })
 public class AuthorAward {
 	
 	@Id
 	@Column(name = "id")
-	@GeneratedValue(strategy=GenerationType.IDENTITY)
+	@GeneratedValue(strategy=GenerationType.SEQUENCE, generator = "author_award_seq")
+	@SequenceGenerator(name = "author_award_seq", sequenceName = "author_award_seq", allocationSize = 50)
 	private long id;
 	
 	@ManyToOne
+	@JoinColumn(name = "author_id")
 	private Author author;
 	
 	@Column(name = "award_desc")
 	private String awardDescription;
 
+	//in whole currency units; null when the award came without money. AwardTotalsListener keeps the
+	//per-author sums in author_award_total.
+	@Column(name = "monetary_reward")
+	private Long monetaryReward;
+
 	public long getId() {
 		return id;
 	}
@@ -47,37 +66,27 @@ public class AuthorAward {
 		this.awardDescription = awardDescription;
 	}
 
+	public Long getMonetaryReward() {
+		return monetaryReward;
+	}
+
+	public void setMonetaryReward(Long monetaryReward) {
+		this.monetaryReward = monetaryReward;
+	}
+
+	//see Author.hashCode
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((author == null) ? 0 : author.hashCode());
-		result = prime * result + ((awardDescription == null) ? 0 : awardDescription.hashCode());
-		result = prime * result + (int) (id ^ (id >>> 32));
-		return result;
+		return AuthorAward.class.hashCode();
 	}
 
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
 			return true;
-		if (obj == null)
-			return false;
-		if (getClass() != obj.getClass())
+		if (!(obj instanceof AuthorAward))
 			return false;
 		AuthorAward other = (AuthorAward) obj;
-		if (author == null) {
-			if (other.author != null)
-				return false;
-		} else if (!author.equals(other.author))
-			return false;
-		if (awardDescription == null) {
-			if (other.awardDescription != null)
-				return false;
-		} else if (!awardDescription.equals(other.awardDescription))
-			return false;
-		if (id != other.id)
-			return false;
-		return true;
+		return id != 0 && id == other.getId();
 	}
 }
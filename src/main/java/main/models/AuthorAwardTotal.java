@@ -0,0 +1,46 @@
+package main.models;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Immutable;
+
+/**
+ * The sum of monetary_reward and the number of awards of one author, kept up to date by
+ * AwardTotalsListener in the same transaction as the award writes. Read-only to hibernate.
+ */
+@Entity
+@Immutable
+@Table(name = "author_award_total", indexes = {
+		@Index(name = "author_award_total_rank_idx", columnList = "total_reward desc, author_id") })
+//walks author_award_total_rank_idx from the top and stops after k rows, however many awards there are.
+@NamedQuery(name = "AuthorAwardTotal.topEarners", query = "select new main.repository.AuthorEarnings(a.id, a.name, t.totalReward, t.awardCount) "
+		+ "from AuthorAwardTotal t, Author a where a.id = t.authorId order by t.totalReward desc, t.authorId")
+public class AuthorAwardTotal {
+
+	@Id
+	@Column(name = "author_id")
+	private long authorId;
+
+	@Column(name = "total_reward")
+	private long totalReward;
+
+	@Column(name = "award_count")
+	private int awardCount;
+
+	public long getAuthorId() {
+		return authorId;
+	}
+
+	public long getTotalReward() {
+		return totalReward;
+	}
+
+	public int getAwardCount() {
+		return awardCount;
+	}
+}
@@ -2,6 +2,7 @@ package main.models;
 
 import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
@@ -9,21 +10,30 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToMany;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.DynamicUpdate;
+
 @Entity
+@Cacheable
+@DynamicUpdate
 @Table(name = "Book")
 public class Book {
 	
 	@Id
 	@Column(name = "id")
-	@GeneratedValue(strategy=GenerationType.IDENTITY)
+	@GeneratedValue(strategy=GenerationType.SEQUENCE, generator = "book_seq")
+	@SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
 	private long id;
 	
 	@Column(name = "title")
 	private String title;
 	
+	//books are usually reached one at a time through an author, so batch rather than subselect.
 	@ManyToMany(mappedBy = "books", fetch = FetchType.LAZY)
+	@BatchSize(size = 50)
 	private Set<Author> authors;
 	
 	public long getId() {
@@ -44,6 +54,20 @@ public class Book {
 	public void setAuthors(Set<Author> authors) {
 		this.authors = authors;
 	}
-	
-	
+
+	//see Author.hashCode
+	@Override
+	public int hashCode() {
+		return Book.class.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Book))
+			return false;
+		Book other = (Book) obj;
+		return id != 0 && id == other.getId();
+	}
 }
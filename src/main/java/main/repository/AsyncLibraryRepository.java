@@ -0,0 +1,268 @@
+package main.repository;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import javax.annotation.PreDestroy;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import main.models.Author;
+import main.models.Book;
+import main.tenancy.TenantConnectionProvider;
+import main.tenancy.Tenants;
+
+/**
+ * Author and book operations that don't block the caller. Each call is one unit of work - its own session
+ * and transaction - run on the libraryExecutor (see Main); a session never leaves the thread that opened it.
+ * <p>
+ * Admission comes in two steps. First per tenant: a tenant has at most as many calls on the executor as it
+ * may hold connections (see {@link TenantConnectionProvider}), the rest wait in the tenant's own line without
+ * a thread, so a busy tenant's backlog is never in front of the other tenants' calls. Then for the pool: at
+ * most as many units of work run as the pool has connections. The executor has more threads than that; the
+ * ones over wait for a permit rather than in Hikari, so they can give up when their deadline passes. Once
+ * running, whatever is left of the deadline becomes the transaction timeout, which hibernate turns into a
+ * query timeout on every statement.
+ * <p>
+ * A call that runs out of time completes with a {@link TimeoutException} (before it started, also while it
+ * waits in its tenant's line) or a query timeout (while running). When the executor's
+ * queue or the tenant's line (library.async.queueSize) is full, a call completes at once with a
+ * {@link RejectedExecutionException}.
+ * <p>
+ * Entities come back detached; initialize lazy collections inside {@link #submit} if you need them.
+ */
+@Component
+public class AsyncLibraryRepository {
+
+	private final SessionFactory sessionFactory;
+	private final ExecutorService executor;
+	private final Semaphore connections;
+	private final TenantConnectionProvider tenantConnections;
+	private final int queueSize;
+	private final long defaultTimeoutMillis;
+	private final ConcurrentMap<String, TenantLine> lines = new ConcurrentHashMap<>();
+	//times out the calls waiting in a tenant's line, which have no thread to do it
+	private final ScheduledThreadPoolExecutor deadlines = new ScheduledThreadPoolExecutor(1, runnable -> {
+		Thread thread = new Thread(runnable, "library-async-deadlines");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	@Autowired
+	public AsyncLibraryRepository(SessionFactory sessionFactory, HikariDataSource dataSource,
+			@Qualifier("libraryExecutor") ExecutorService executor, TenantConnectionProvider tenantConnections,
+			@Value("${library.async.queueSize:10000}") int queueSize,
+			@Value("${library.async.timeoutMs:5000}") long defaultTimeoutMillis) {
+		this.sessionFactory = sessionFactory;
+		this.executor = executor;
+		this.connections = new Semaphore(dataSource.getMaximumPoolSize(), true);
+		this.tenantConnections = tenantConnections;
+		this.queueSize = queueSize;
+		this.defaultTimeoutMillis = defaultTimeoutMillis;
+		deadlines.setRemoveOnCancelPolicy(true);
+	}
+
+	@PreDestroy
+	public void close() {
+		deadlines.shutdownNow();
+	}
+
+	public CompletableFuture<Author> findAuthor(long id) {
+		return submit(defaultTimeoutMillis, session -> session.get(Author.class, id));
+	}
+
+	public CompletableFuture<List<Author>> findAuthorsByName(String name) {
+		return submit(defaultTimeoutMillis, session -> session.createNamedQuery("Author.byName", Author.class)
+				.setParameter("name", name)
+				.list());
+	}
+
+	/**
+	 * Saves a new author (and, by cascade, its books and awards).
+	 */
+	public CompletableFuture<Author> saveAuthor(Author author) {
+		return submit(defaultTimeoutMillis, session -> {
+			session.save(author);
+			return author;
+		});
+	}
+
+	public CompletableFuture<Author> mergeAuthor(Author author) {
+		return submit(defaultTimeoutMillis, session -> (Author) session.merge(author));
+	}
+
+	public CompletableFuture<Book> findBook(long id) {
+		return submit(defaultTimeoutMillis, session -> session.get(Book.class, id));
+	}
+
+	public CompletableFuture<Book> saveBook(Book book) {
+		return submit(defaultTimeoutMillis, session -> {
+			session.save(book);
+			return book;
+		});
+	}
+
+	/**
+	 * Runs any unit of work. The deadline counts from now, time spent waiting for a thread or a
+	 * connection included.
+	 */
+	public <T> CompletableFuture<T> submit(long timeoutMillis, Function<Session, T> work) {
+		//the pool threads don't know which catalog the caller works on
+		String tenant = Tenants.current();
+		Call<T> call = new Call<>(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis), work);
+		lines.computeIfAbsent(tenant, TenantLine::new).offer(call);
+		return call.result;
+	}
+
+	private <T> T admit(String tenant, long deadline, Function<Session, T> work)
+			throws TimeoutException, InterruptedException {
+		long remaining = deadline - System.nanoTime();
+		if (remaining <= 0 || !connections.tryAcquire(remaining, TimeUnit.NANOSECONDS)) {
+			throw new TimeoutException("Deadline passed before a connection was free");
+		}
+		try {
+			return run(tenant, deadline, work);
+		} finally {
+			connections.release();
+		}
+	}
+
+	private <T> T run(String tenant, long deadline, Function<Session, T> work) {
+		Session session = sessionFactory.withOptions().tenantIdentifier(tenant).openSession();
+		try {
+			Transaction transaction = session.getTransaction();
+			//in whole seconds, rounded up
+			long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+			transaction.setTimeout((int) Math.max(1, (remainingMillis + 999) / 1000));
+			transaction.begin();
+			T result = work.apply(session);
+			transaction.commit();
+			return result;
+		} catch (RuntimeException e) {
+			if (session.getTransaction().isActive()) {
+				session.getTransaction().rollback();
+			}
+			throw e;
+		} finally {
+			session.close();
+		}
+	}
+
+	private static final class Call<T> {
+
+		final long deadline;
+		final Function<Session, T> work;
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		ScheduledFuture<?> timeout;
+
+		Call(long deadline, Function<Session, T> work) {
+			this.deadline = deadline;
+			this.work = work;
+		}
+	}
+
+	//A tenant's calls: at most as many of them on the executor as the tenant may hold connections, the rest
+	//wait here in order. A call that finishes hands its place to the next one.
+	private final class TenantLine {
+
+		private final String tenant;
+		private final int limit;
+		private final Deque<Call<?>> waiting = new ArrayDeque<>();
+		private int dispatched;
+
+		TenantLine(String tenant) {
+			this.tenant = tenant;
+			this.limit = tenantConnections.getMaxConnections(tenant);
+		}
+
+		void offer(Call<?> call) {
+			synchronized (this) {
+				if (dispatched >= limit) {
+					if (waiting.size() < queueSize) {
+						waiting.add(call);
+						call.timeout = deadlines.schedule(() -> expire(call), call.deadline - System.nanoTime(),
+								TimeUnit.NANOSECONDS);
+					} else {
+						call.result.completeExceptionally(new RejectedExecutionException(
+								"Tenant " + tenant + " has " + queueSize + " calls waiting"));
+					}
+					return;
+				}
+				dispatched++;
+			}
+			if (!execute(call)) {
+				next();
+			}
+		}
+
+		//a loop, not recursion: with the executor full, the waiting calls fail here one after the other
+		private void next() {
+			while (true) {
+				Call<?> call;
+				synchronized (this) {
+					call = waiting.poll();
+					if (call == null) {
+						dispatched--;
+						return;
+					}
+				}
+				call.timeout.cancel(false);
+				//done already if the caller cancelled it
+				if (!call.result.isDone() && execute(call)) {
+					return;
+				}
+			}
+		}
+
+		private void expire(Call<?> call) {
+			synchronized (this) {
+				if (!waiting.remove(call)) {
+					return;
+				}
+			}
+			call.result.completeExceptionally(
+					new TimeoutException("Deadline passed waiting behind tenant " + tenant + "'s other calls"));
+		}
+
+		private <T> boolean execute(Call<T> call) {
+			try {
+				executor.execute(() -> {
+					try {
+						call.result.complete(admit(tenant, call.deadline, call.work));
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						call.result.completeExceptionally(e);
+					} catch (Throwable e) {
+						call.result.completeExceptionally(e);
+					} finally {
+						next();
+					}
+				});
+				return true;
+			} catch (RejectedExecutionException e) {
+				call.result.completeExceptionally(e);
+				return false;
+			}
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package main.repository;
+
+/**
+ * One line of the top earners leaderboard.
+ */
+public final class AuthorEarnings {
+
+	private final long id;
+	private final String name;
+	private final long totalReward;
+	private final int awardCount;
+
+	public AuthorEarnings(long id, String name, long totalReward, int awardCount) {
+		this.id = id;
+		this.name = name;
+		this.totalReward = totalReward;
+		this.awardCount = awardCount;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getTotalReward() {
+		return totalReward;
+	}
+
+	public int getAwardCount() {
+		return awardCount;
+	}
+
+	@Override
+	public String toString() {
+		return "AuthorEarnings [id=" + id + ", name=" + name + ", totalReward=" + totalReward + ", awardCount=" + awardCount + "]";
+	}
+}
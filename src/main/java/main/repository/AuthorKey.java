@@ -0,0 +1,38 @@
+package main.repository;
+
+import main.models.Author;
+
+/**
+ * Where a keyset page ended: the name and id of its last author. The next page starts right after it.
+ */
+public final class AuthorKey {
+
+	private final String name;
+	private final long id;
+
+	public AuthorKey(String name, long id) {
+		this.name = name;
+		this.id = id;
+	}
+
+	public static AuthorKey of(Author author) {
+		return new AuthorKey(author.getName(), author.getId());
+	}
+
+	public static AuthorKey of(AuthorSummary summary) {
+		return new AuthorKey(summary.getName(), summary.getId());
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	@Override
+	public String toString() {
+		return "AuthorKey [name=" + name + ", id=" + id + "]";
+	}
+}
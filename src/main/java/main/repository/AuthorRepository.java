@@ -0,0 +1,100 @@
+package main.repository;
+
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import main.models.Author;
+import main.session.ReadOnlySessionTemplate;
+
+/**
+ * Queries for author listings and lookups, all read-only.
+ * <p>
+ * Summaries are {@link AuthorSummary} rows instead of entities: the counts are worked out by the database
+ * and no Author, Book or AuthorAward is ever loaded. Their size() becomes a correlated count(*) per row,
+ * served by the book_authorship primary key and author_award_author_idx; joining both collections and
+ * grouping would multiply the two counts.
+ * <p>
+ * The methods taking an {@link AuthorKey} are keyset pages: pass null for the first page and the key of
+ * the last row for every page after it. They cost the same however deep you go, unlike
+ * {@link #findSummaries(int, int)}, which has the database count off every skipped row. Authors without
+ * a name never show up in keyset pages. The queries themselves are named queries on {@link Author}.
+ */
+@Component
+public class AuthorRepository {
+
+	private final ReadOnlySessionTemplate readOnly;
+
+	@Autowired
+	public AuthorRepository(ReadOnlySessionTemplate readOnly) {
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * Authors ordered by name, counted off from the start.
+	 */
+	public List<AuthorSummary> findSummaries(int firstResult, int maxResults) {
+		return readOnly.execute(session -> session.createNamedQuery("Author.summaries", AuthorSummary.class)
+				.setFirstResult(firstResult)
+				.setMaxResults(maxResults)
+				.list());
+	}
+
+	/**
+	 * Authors ordered by name, starting after the given one.
+	 */
+	public List<AuthorSummary> findSummaries(AuthorKey after, int maxResults) {
+		if (after == null) {
+			return findSummaries(0, maxResults);
+		}
+		return readOnly.execute(session -> session.createNamedQuery("Author.summariesAfter", AuthorSummary.class)
+				.setParameter("afterName", after.getName())
+				.setParameter("afterId", after.getId())
+				.setMaxResults(maxResults)
+				.list());
+	}
+
+	/**
+	 * Authors with exactly this name, ordered by id. The entities are read-only and detached.
+	 */
+	public List<Author> findByName(String name, AuthorKey after, int maxResults) {
+		return readOnly.execute(session -> session.createNamedQuery("Author.byNameAfter", Author.class)
+				.setParameter("name", name)
+				.setParameter("afterId", after == null ? 0L : after.getId())
+				.setMaxResults(maxResults)
+				.list());
+	}
+
+	/**
+	 * Authors whose name starts with the prefix, ignoring case, ordered by lower-cased name and id.
+	 * The entities are read-only and detached. Only works on PostgreSQL, see Author.byNamePrefixAfter.
+	 */
+	public List<Author> findByNamePrefix(String prefix, AuthorKey after, int maxResults) {
+		if (prefix == null || prefix.isEmpty()) {
+			throw new IllegalArgumentException("A prefix is required, use findSummaries to list everyone");
+		}
+		String lowered = prefix.toLowerCase(Locale.ROOT);
+		return readOnly.execute(session -> session.createNamedQuery("Author.byNamePrefixAfter", Author.class)
+				.setParameter("prefix", escapeLike(lowered) + "%")
+				//the first page starts at the prefix itself; ids are never 0
+				.setParameter("afterName", after == null ? lowered : after.getName())
+				.setParameter("afterId", after == null ? 0L : after.getId())
+				.setMaxResults(maxResults)
+				.list());
+	}
+
+	/**
+	 * The k authors with the most award money, most first. Authors without awards count as 0.
+	 */
+	public List<AuthorEarnings> findTopEarners(int k) {
+		return readOnly.execute(session -> session.createNamedQuery("AuthorAwardTotal.topEarners", AuthorEarnings.class)
+				.setMaxResults(k)
+				.list());
+	}
+
+	private static String escapeLike(String value) {
+		return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+	}
+}
@@ -0,0 +1,41 @@
+package main.repository;
+
+/**
+ * One row of an author listing. Built by the query itself, so it is never part of a session.
+ */
+public final class AuthorSummary {
+
+	private final long id;
+	private final String name;
+	private final int bookCount;
+	private final int awardCount;
+
+	//the counts come from count() subqueries, which hibernate hands over as longs
+	public AuthorSummary(long id, String name, long bookCount, long awardCount) {
+		this.id = id;
+		this.name = name;
+		this.bookCount = Math.toIntExact(bookCount);
+		this.awardCount = Math.toIntExact(awardCount);
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getBookCount() {
+		return bookCount;
+	}
+
+	public int getAwardCount() {
+		return awardCount;
+	}
+
+	@Override
+	public String toString() {
+		return "AuthorSummary [id=" + id + ", name=" + name + ", bookCount=" + bookCount + ", awardCount=" + awardCount + "]";
+	}
+}
@@ -0,0 +1,52 @@
+package main.routing;
+
+import java.util.function.Supplier;
+
+/**
+ * What the current thread is about to do, as far as {@link RoutingDataSource} is concerned.
+ * <p>
+ * Connections taken inside {@link #readOnly(Supplier)} may go to a replica. After a write commits, the
+ * thread's reads stay on the primary for a while, so it sees its own writes even though the replicas
+ * lag behind.
+ */
+public final class ReadRouting {
+
+	private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+	private static final ThreadLocal<Long> LAST_WRITE = new ThreadLocal<>();
+
+	private ReadRouting() {
+	}
+
+	public static <T> T readOnly(Supplier<T> connectionUser) {
+		Boolean outer = READ_ONLY.get();
+		READ_ONLY.set(Boolean.TRUE);
+		try {
+			return connectionUser.get();
+		} finally {
+			if (outer == null) {
+				READ_ONLY.remove();
+			} else {
+				READ_ONLY.set(outer);
+			}
+		}
+	}
+
+	public static boolean isReadOnly() {
+		return READ_ONLY.get() != null;
+	}
+
+	/**
+	 * Called by {@link WriteTracker} when a transaction that wrote commits.
+	 */
+	public static void wrote() {
+		LAST_WRITE.set(System.nanoTime());
+	}
+
+	/**
+	 * @return whether this thread committed a write in the last stickyNanos
+	 */
+	public static boolean wroteWithin(long stickyNanos) {
+		Long lastWrite = LAST_WRITE.get();
+		return lastWrite != null && System.nanoTime() - lastWrite < stickyNanos;
+	}
+}
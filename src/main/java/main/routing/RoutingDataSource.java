@@ -0,0 +1,85 @@
+package main.routing;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Hands out primary connections, except to read-only work (see {@link ReadRouting}), which gets a
+ * replica when there is one. Replicas are picked round robin or by fewest active connections.
+ * A thread that committed a write less than stickyMillis ago reads from the primary.
+ */
+public class RoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+	public enum Balance {
+		ROUND_ROBIN, LEAST_CONNECTIONS
+	}
+
+	private final HikariDataSource primary;
+	private final List<HikariDataSource> replicas;
+	private final Balance balance;
+	private final long stickyNanos;
+	private final AtomicInteger next = new AtomicInteger();
+
+	public RoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas, Balance balance, long stickyMillis) {
+		this.primary = primary;
+		this.replicas = new ArrayList<>(replicas);
+		this.balance = balance;
+		this.stickyNanos = TimeUnit.MILLISECONDS.toNanos(stickyMillis);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return target().getConnection();
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return target().getConnection(username, password);
+	}
+
+	/**
+	 * Where a connection taken now on this thread would come from.
+	 */
+	public DataSource target() {
+		if (replicas.isEmpty() || !ReadRouting.isReadOnly() || ReadRouting.wroteWithin(stickyNanos)) {
+			return primary;
+		}
+		if (balance == Balance.LEAST_CONNECTIONS) {
+			HikariDataSource least = replicas.get(0);
+			for (HikariDataSource replica : replicas) {
+				if (active(replica) < active(least)) {
+					least = replica;
+				}
+			}
+			return least;
+		}
+		return replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+	}
+
+	public List<HikariDataSource> getReplicas() {
+		return replicas;
+	}
+
+	private static int active(HikariDataSource pool) {
+		//null until the pool has started, which it does on its first connection
+		return pool.getHikariPoolMXBean() == null ? 0 : pool.getHikariPoolMXBean().getActiveConnections();
+	}
+
+	/**
+	 * Closes the replica pools; the primary is a bean of its own.
+	 */
+	@Override
+	public void close() {
+		replicas.forEach(HikariDataSource::close);
+	}
+}
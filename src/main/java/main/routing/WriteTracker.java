@@ -0,0 +1,113 @@
+package main.routing;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.Session;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Tells {@link ReadRouting} when a transaction that wrote commits. Main registers it for hibernate's post
+ * insert, update and delete events of entities and collections. Writes that raise no events - bulk HQL,
+ * native statements, doWork, COPY - are reported with {@link #wrote(Session)} by the code that runs them.
+ */
+public class WriteTracker implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+		PostCollectionRecreateEventListener, PostCollectionUpdateEventListener, PostCollectionRemoveEventListener {
+
+	private static final long serialVersionUID = 1L;
+
+	//session -> whether its current transaction wrote something. A session leaves when it closes, and one
+	//that is dropped without closing is only weakly held.
+	private static final Map<SharedSessionContractImplementor, Boolean> SESSIONS = Collections.synchronizedMap(new WeakHashMap<>());
+
+	/**
+	 * The session's transaction wrote something hibernate raised no event for.
+	 */
+	public static void wrote(Session session) {
+		wrote(session.unwrap(SessionImplementor.class));
+	}
+
+	/**
+	 * Whether the session's current transaction wrote something so far.
+	 */
+	public static boolean isWriting(Session session) {
+		//a cast, unwrap refuses closed sessions
+		return SESSIONS.get((SessionImplementor) session) == Boolean.TRUE;
+	}
+
+	private static void wrote(SessionImplementor session) {
+		Boolean writing = SESSIONS.put(session, Boolean.TRUE);
+		if (writing == Boolean.TRUE) {
+			return;
+		}
+		if (writing == null) {
+			//closed before its transaction completed, the completion below never runs
+			session.addEventListeners(new BaseSessionEventListener() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public void end() {
+					SESSIONS.remove(session);
+				}
+			});
+		}
+		session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, completed) -> {
+			SESSIONS.replace(completed, Boolean.FALSE);
+			if (success) {
+				ReadRouting.wrote();
+			}
+		});
+	}
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		wrote(event.getSession());
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		wrote(event.getSession());
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		wrote(event.getSession());
+	}
+
+	@Override
+	public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+		wrote(event.getSession());
+	}
+
+	@Override
+	public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+		wrote(event.getSession());
+	}
+
+	@Override
+	public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+		wrote(event.getSession());
+	}
+
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return false;
+	}
+}
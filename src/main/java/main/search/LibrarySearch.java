@@ -0,0 +1,174 @@
+package main.search;
+
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+import org.jboss.logging.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import main.session.ReadOnlySessionTemplate;
+import main.tenancy.Tenants;
+
+/**
+ * Full-text search over book titles and award descriptions, PostgreSQL only.
+ * <p>
+ * The indexes are GIN expression indexes on to_tsvector('simple', ...) (see buildtables.sql), so the
+ * database keeps them up to date on every insert and update, whichever way it comes - save, merge,
+ * update, BulkLoader. The 'simple' configuration doesn't stem, which keeps prefix matches predictable.
+ * Every word of the search text must be the start of a word in the text, so "hob ho" finds "Hobbit Holes".
+ */
+@Component
+public class LibrarySearch {
+
+	private static final Logger LOG = Logger.getLogger(LibrarySearch.class);
+
+	private static final Index BOOK_TITLES = new Index("book_title_fts", "book", "id", "title");
+	private static final Index AWARD_DESCRIPTIONS = new Index("author_award_desc_fts", "author_award", "id", "award_desc");
+
+	private final ReadOnlySessionTemplate readOnly;
+	private final HikariDataSource dataSource;
+	private final ExecutorService executor;
+
+	@Autowired
+	public LibrarySearch(ReadOnlySessionTemplate readOnly, HikariDataSource dataSource,
+			@Qualifier("libraryExecutor") ExecutorService executor) {
+		this.readOnly = readOnly;
+		this.dataSource = dataSource;
+		this.executor = executor;
+	}
+
+	/**
+	 * Best matches first.
+	 */
+	public List<SearchHit> searchBooks(String text, int firstResult, int maxResults) {
+		return search(BOOK_TITLES, text, firstResult, maxResults);
+	}
+
+	public List<SearchHit> searchAwards(String text, int firstResult, int maxResults) {
+		return search(AWARD_DESCRIPTIONS, text, firstResult, maxResults);
+	}
+
+	/**
+	 * Builds fresh copies of both indexes side by side, each on its own connection, then swaps them in by
+	 * renaming and drops the old ones. Reads and writes carry on meanwhile (create and drop index
+	 * concurrently); the swap itself only takes the locks of the two renames. Nothing needs this in normal
+	 * operation; it is for bloated indexes, or after changing the index definition.
+	 * <p>
+	 * Rebuilds the current tenant's indexes (see {@link Tenants}); each catalog has its own.
+	 */
+	public void rebuildIndexes() {
+		String tenant = Tenants.current();
+		CompletableFuture<Void> books = CompletableFuture.runAsync(() -> rebuild(BOOK_TITLES, tenant), executor);
+		CompletableFuture<Void> awards = CompletableFuture.runAsync(() -> rebuild(AWARD_DESCRIPTIONS, tenant), executor);
+		CompletableFuture.allOf(books, awards).join();
+	}
+
+	private List<SearchHit> search(Index index, String text, int firstResult, int maxResults) {
+		String query = toTsQuery(text);
+		if (query.isEmpty()) {
+			return Collections.emptyList();
+		}
+		return readOnly.execute(session -> {
+			@SuppressWarnings("unchecked")
+			List<Object[]> rows = session.createNativeQuery("select " + index.idColumn + ", " + index.textColumn
+					+ ", ts_rank(" + index.document() + ", q) as rank "
+					+ "from " + index.table + ", to_tsquery('simple', :query) q "
+					+ "where " + index.document() + " @@ q "
+					+ "order by rank desc, " + index.idColumn)
+					.setParameter("query", query)
+					.setFirstResult(firstResult)
+					.setMaxResults(maxResults)
+					.list();
+			List<SearchHit> hits = new ArrayList<>(rows.size());
+			for (Object[] row : rows) {
+				hits.add(new SearchHit(((BigInteger) row[0]).longValue(), (String) row[1], ((Number) row[2]).floatValue()));
+			}
+			return hits;
+		});
+	}
+
+	/**
+	 * Words become prefix lexemes anded together. Anything but letters and digits is a separator, so
+	 * nothing typed can break the tsquery syntax.
+	 */
+	static String toTsQuery(String text) {
+		List<String> words = new ArrayList<>();
+		if (text != null) {
+			for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+				if (!word.isEmpty()) {
+					words.add(word + ":*");
+				}
+			}
+		}
+		return String.join(" & ", words);
+	}
+
+	private void rebuild(Index index, String tenant) {
+		long start = System.nanoTime();
+		//concurrently can't run inside a transaction; pool connections are in autocommit
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+			//the unqualified names below are the tenant's; the pool gets the connection back on public
+			connection.setSchema(tenant);
+			try {
+				rebuild(index, connection, statement);
+			} finally {
+				connection.setSchema(Tenants.DEFAULT);
+			}
+		} catch (SQLException e) {
+			throw new CompletionException(e);
+		}
+		LOG.infof("Rebuilt %s of %s in %dms", index.name, tenant, (System.nanoTime() - start) / 1000000);
+	}
+
+	private static void rebuild(Index index, Connection connection, Statement statement) throws SQLException {
+		statement.execute("drop index concurrently if exists " + index.name + "_new");
+		statement.execute("drop index concurrently if exists " + index.name + "_old");
+		statement.execute("create index concurrently " + index.name + "_new on " + index.table
+				+ " using gin (" + index.document() + ")");
+		//the renames in one transaction, so there is an index under the name at every moment
+		connection.setAutoCommit(false);
+		try {
+			statement.execute("alter index if exists " + index.name + " rename to " + index.name + "_old");
+			statement.execute("alter index " + index.name + "_new rename to " + index.name);
+			connection.commit();
+		} catch (SQLException e) {
+			connection.rollback();
+			throw e;
+		} finally {
+			connection.setAutoCommit(true);
+		}
+		statement.execute("drop index concurrently if exists " + index.name + "_old");
+	}
+
+	private static class Index {
+		final String name;
+		final String table;
+		final String idColumn;
+		final String textColumn;
+
+		Index(String name, String table, String idColumn, String textColumn) {
+			this.name = name;
+			this.table = table;
+			this.idColumn = idColumn;
+			this.textColumn = textColumn;
+		}
+
+		//has to be the indexed expression, character for character, or the index isn't used
+		String document() {
+			return "to_tsvector('simple', coalesce(" + textColumn + ", ''))";
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package main.search;
+
+/**
+ * A book or award matching a search, with the text that matched and how well.
+ */
+public final class SearchHit {
+
+	private final long id;
+	private final String text;
+	private final float rank;
+
+	public SearchHit(long id, String text, float rank) {
+		this.id = id;
+		this.text = text;
+		this.rank = rank;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	public float getRank() {
+		return rank;
+	}
+
+	@Override
+	public String toString() {
+		return "SearchHit [id=" + id + ", text=" + text + ", rank=" + rank + "]";
+	}
+}
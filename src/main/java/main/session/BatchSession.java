@@ -0,0 +1,189 @@
+package main.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.CacheMode;
+import org.hibernate.LockOptions;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SessionStatistics;
+import org.jboss.logging.Logger;
+
+/**
+ * A session for jobs that write far more entities than fit in memory. Whenever the persistence context
+ * holds maxEntities entities, or is estimated at maxBytes, the chunk is flushed, committed and cleared.
+ * <p>
+ * Committing is what bounds memory: until a transaction ends hibernate holds on to every insert, update
+ * and delete it executed, to update the second level cache afterwards, and clear() doesn't release them.
+ * So a job that fails half way leaves the chunks before the failure committed. The session doesn't put
+ * what it writes into the second level cache either.
+ * <p>
+ * After a clear, whatever the job still holds is detached - except entities passed to {@link #keep},
+ * which are re-attached straight away (without a select), so the job can go on using e.g. a shared book
+ * for every author it creates. {@link #forget} stops that. Make maxEntities a multiple of the jdbc batch
+ * size (50) so every flush sends full batches.
+ * <p>
+ * Call {@link #commit()} at the end; closing without it rolls back the last chunk.
+ */
+public class BatchSession implements AutoCloseable {
+
+	private static final Logger LOG = Logger.getLogger(BatchSession.class);
+
+	//Rough heap cost of one managed entity (the instance, its EntityEntry, key and loaded-state snapshot)
+	//and of one managed collection (wrapper, snapshot, CollectionEntry). Only used for the maxBytes estimate.
+	private static final long ENTITY_BYTES = 600;
+	private static final long COLLECTION_BYTES = 400;
+
+	private final Session session;
+	private final int maxEntities;
+	private final long maxBytes;
+	private final List<Object> kept = new ArrayList<>();
+	private final long start = System.nanoTime();
+	private long processed;
+	private long writtenEntities;
+	private int chunks;
+
+	BatchSession(SessionFactory sessionFactory, int maxEntities, long maxBytes) {
+		this.maxEntities = maxEntities;
+		this.maxBytes = maxBytes;
+		this.session = sessionFactory.openSession();
+		session.setCacheMode(CacheMode.IGNORE);
+		session.beginTransaction();
+	}
+
+	public Object save(Object entity) {
+		Object id = session.save(entity);
+		processed();
+		return id;
+	}
+
+	public void persist(Object entity) {
+		session.persist(entity);
+		processed();
+	}
+
+	/**
+	 * The managed copy is only good until the chunk ends; keep() it to hold on to it.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T merge(T entity) {
+		T merged = (T) session.merge(entity);
+		processed();
+		return merged;
+	}
+
+	public void delete(Object entity) {
+		session.delete(entity);
+		processed();
+	}
+
+	/**
+	 * Keeps a persistent entity attached across chunks. Returns it for convenience.
+	 */
+	public <T> T keep(T entity) {
+		if (!session.contains(entity)) {
+			session.buildLockRequest(LockOptions.NONE).lock(entity);
+		}
+		kept.add(entity);
+		return entity;
+	}
+
+	public void forget(Object entity) {
+		kept.removeIf(k -> k == entity);
+	}
+
+	/**
+	 * For whatever the wrapper doesn't offer. Don't hold on to entities loaded through it.
+	 */
+	public Session getSession() {
+		return session;
+	}
+
+	/**
+	 * Ends the current chunk now.
+	 */
+	public void commitChunk() {
+		endChunk();
+		session.beginTransaction();
+		//the kept entities were just committed, so the database has exactly their state
+		for (Object entity : kept) {
+			session.buildLockRequest(LockOptions.NONE).lock(entity);
+		}
+	}
+
+	public void commit() {
+		endChunk();
+		LOG.infof("Batch committed: %s", this);
+	}
+
+	private void endChunk() {
+		int entities = getManagedEntities();
+		session.getTransaction().commit();
+		session.clear();
+		writtenEntities += entities;
+		chunks++;
+		LOG.debugf("Batch chunk %d: %d entities, %s", chunks, entities, this);
+	}
+
+	@Override
+	public void close() {
+		try {
+			if (session.getTransaction().isActive()) {
+				session.getTransaction().rollback();
+			}
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Calls to save/persist/merge/delete so far.
+	 */
+	public long getProcessed() {
+		return processed;
+	}
+
+	public int getChunks() {
+		return chunks;
+	}
+
+	/**
+	 * Entities that were in the persistence context when a chunk ended, cascaded ones and kept ones included.
+	 */
+	public long getWrittenEntities() {
+		return writtenEntities;
+	}
+
+	public int getManagedEntities() {
+		return session.getStatistics().getEntityCount();
+	}
+
+	public long getEstimatedBytes() {
+		SessionStatistics statistics = session.getStatistics();
+		return statistics.getEntityCount() * ENTITY_BYTES + statistics.getCollectionCount() * COLLECTION_BYTES;
+	}
+
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	public double getEntitiesPerSecond() {
+		long nanos = System.nanoTime() - start;
+		return nanos == 0 ? 0 : writtenEntities * 1e9 / nanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d processed, %d entities in %d chunks, %dms, %.0f entities/s",
+				processed, writtenEntities, chunks, getElapsedMillis(), getEntitiesPerSecond());
+	}
+
+	private void processed() {
+		processed++;
+		if (getManagedEntities() >= maxEntities || getEstimatedBytes() >= maxBytes) {
+			commitChunk();
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package main.session;
+
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Opens {@link BatchSession}s. The limits are library.batch.maxEntities and library.batch.maxBytes.
+ */
+@Component
+public class BatchSessions {
+
+	private final SessionFactory sessionFactory;
+	private final int maxEntities;
+	private final long maxBytes;
+
+	@Autowired
+	public BatchSessions(SessionFactory sessionFactory, @Value("${library.batch.maxEntities:1000}") int maxEntities,
+			@Value("${library.batch.maxBytes:16777216}") long maxBytes) {
+		this.sessionFactory = sessionFactory;
+		this.maxEntities = maxEntities;
+		this.maxBytes = maxBytes;
+	}
+
+	public BatchSession open() {
+		return new BatchSession(sessionFactory, maxEntities, maxBytes);
+	}
+
+	public BatchSession open(int maxEntities, long maxBytes) {
+		return new BatchSession(sessionFactory, maxEntities, maxBytes);
+	}
+}
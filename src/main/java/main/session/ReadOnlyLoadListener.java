@@ -0,0 +1,24 @@
+package main.session;
+
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+
+/**
+ * Keeps what a {@link ReadOnlySessionTemplate} session loads read-only. A named query always sets its own
+ * read-only flag - false unless the query declares org.hibernate.readOnly - and that beats the session's
+ * default, so without this every named query in a read-only session loaded writable entities with snapshots.
+ * Main registers it for hibernate's post load event; sessions opt in with the {@link #READ_ONLY} property.
+ */
+public class ReadOnlyLoadListener implements PostLoadEventListener {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String READ_ONLY = "main.session.readOnly";
+
+	@Override
+	public void onPostLoad(PostLoadEvent event) {
+		if (Boolean.TRUE.equals(event.getSession().getProperties().get(READ_ONLY))) {
+			event.getSession().setReadOnly(event.getEntity(), true);
+		}
+	}
+}
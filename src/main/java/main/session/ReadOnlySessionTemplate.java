@@ -0,0 +1,76 @@
+package main.session;
+
+import java.util.function.Function;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionBuilder;
+import org.hibernate.SessionFactory;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import main.routing.ReadRouting;
+
+/**
+ * Runs query-only work in a session that can't write.
+ * <ul>
+ * <li>everything loaded is read-only, so hibernate keeps no snapshot to dirty check against</li>
+ * <li>flush mode is manual, so queries don't auto-flush (there is nothing to flush anyway)</li>
+ * <li>the jdbc connection is read-only, which PostgreSQL turns into BEGIN READ ONLY</li>
+ * <li>the connection comes from a replica if there is one (see RoutingDataSource), and is held until the
+ * session closes, so every transaction of the session reads from the same place</li>
+ * </ul>
+ * Entities handed back are detached once the work returns; initialize whatever you need inside it.
+ */
+@Component
+public class ReadOnlySessionTemplate {
+
+	private final SessionFactory sessionFactory;
+
+	@Autowired
+	public ReadOnlySessionTemplate(SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
+	}
+
+	public <T> T execute(Function<Session, T> work) {
+		Session session = openSession();
+		try {
+			session.beginTransaction();
+			T result = work.apply(session);
+			session.getTransaction().commit();
+			return result;
+		} catch (RuntimeException e) {
+			if (session.getTransaction().isActive()) {
+				session.getTransaction().rollback();
+			}
+			throw e;
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * For callers that manage the session themselves. The caller closes it; the pool resets the connection.
+	 */
+	public Session openSession() {
+		//the connection is taken right here, while the thread is marked read-only
+		Session session = ReadRouting.readOnly(() -> sessionBuilder()
+				.flushMode(FlushMode.MANUAL)
+				.connectionHandlingMode(PhysicalConnectionHandlingMode.IMMEDIATE_ACQUISITION_AND_HOLD)
+				.openSession());
+		session.setDefaultReadOnly(true);
+		//named queries override the default, see ReadOnlyLoadListener
+		session.setProperty(ReadOnlyLoadListener.READ_ONLY, Boolean.TRUE);
+		//has to happen before the first transaction starts
+		session.doWork(connection -> connection.setReadOnly(true));
+		return session;
+	}
+
+	/**
+	 * Where the sessions start from, before the read-only settings are applied. Tests add a statement inspector here.
+	 */
+	protected SessionBuilder<?> sessionBuilder() {
+		return sessionFactory.withOptions();
+	}
+}
@@ -0,0 +1,137 @@
+package main.tenancy;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.hibernate.engine.jdbc.connections.spi.MultiTenantConnectionProvider;
+
+/**
+ * Hands hibernate connections from the one pool, switched to the tenant's schema.
+ * <p>
+ * A tenant connection gets its search_path set to the tenant's schema (pgjdbc's setSchema), and back
+ * to public when it is released; Hikari only undoes it itself when the pool has a schema configured.
+ * Every tenant can hold at most maxConnections at once, {@link Tenants#DEFAULT} at most
+ * defaultMaxConnections (Main makes that the pool's size unless told otherwise). A tenant with more work
+ * than that queues on its own fair semaphore instead of in the pool, so it can't take the connections the
+ * other tenants need. That wait has a timeout of its own, before the pool's: in the worst case a caller
+ * waits twice the connection timeout.
+ */
+public class TenantConnectionProvider implements MultiTenantConnectionProvider {
+
+	private static final long serialVersionUID = 1L;
+
+	private final DataSource dataSource;
+	private final int maxConnections;
+	private final int defaultMaxConnections;
+	private final long timeoutMillis;
+	private final ConcurrentMap<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+	public TenantConnectionProvider(DataSource dataSource, int maxConnections, int defaultMaxConnections,
+			long timeoutMillis) {
+		this.dataSource = dataSource;
+		this.maxConnections = maxConnections;
+		this.defaultMaxConnections = defaultMaxConnections;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	@Override
+	public Connection getAnyConnection() throws SQLException {
+		return dataSource.getConnection();
+	}
+
+	@Override
+	public void releaseAnyConnection(Connection connection) throws SQLException {
+		connection.close();
+	}
+
+	@Override
+	public Connection getConnection(String tenant) throws SQLException {
+		Semaphore tenantPermits = permits(Tenants.check(tenant));
+		try {
+			if (!tenantPermits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+				throw new SQLTransientConnectionException("Tenant " + tenant + " has all its " + getMaxConnections(tenant)
+						+ " connections in use, waited " + timeoutMillis + "ms");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLTransientConnectionException("Interrupted waiting for a connection for tenant " + tenant, e);
+		}
+		Connection connection = null;
+		try {
+			connection = getAnyConnection();
+			if (!Tenants.DEFAULT.equals(tenant)) {
+				connection.setSchema(tenant);
+			}
+			return connection;
+		} catch (SQLException | RuntimeException e) {
+			tenantPermits.release();
+			if (connection != null) {
+				connection.close();
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public void releaseConnection(String tenant, Connection connection) throws SQLException {
+		try {
+			if (!Tenants.DEFAULT.equals(tenant)) {
+				connection.setSchema(Tenants.DEFAULT);
+			}
+		} finally {
+			try {
+				connection.close();
+			} finally {
+				permits(tenant).release();
+			}
+		}
+	}
+
+	/**
+	 * Connections the tenant holds right now.
+	 */
+	public int getActiveConnections(String tenant) {
+		Semaphore tenantPermits = permits.get(tenant);
+		return tenantPermits == null ? 0 : getMaxConnections(tenant) - tenantPermits.availablePermits();
+	}
+
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * Connections the tenant can hold at once.
+	 */
+	public int getMaxConnections(String tenant) {
+		return Tenants.DEFAULT.equals(tenant) ? defaultMaxConnections : maxConnections;
+	}
+
+	private Semaphore permits(String tenant) {
+		return permits.computeIfAbsent(tenant, t -> new Semaphore(getMaxConnections(t), true));
+	}
+
+	@Override
+	public boolean supportsAggressiveRelease() {
+		return false;
+	}
+
+	@Override
+	public boolean isUnwrappableAs(@SuppressWarnings("rawtypes") Class unwrapType) {
+		return unwrapType.isInstance(this);
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> unwrapType) {
+		if (!isUnwrappableAs(unwrapType)) {
+			throw new IllegalArgumentException("Can't unwrap to " + unwrapType);
+		}
+		return unwrapType.cast(this);
+	}
+}
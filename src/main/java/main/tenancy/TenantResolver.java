@@ -0,0 +1,19 @@
+package main.tenancy;
+
+import org.hibernate.context.spi.CurrentTenantIdentifierResolver;
+
+/**
+ * Gives sessions opened without an explicit tenantIdentifier the tenant of the current thread.
+ */
+public class TenantResolver implements CurrentTenantIdentifierResolver {
+
+	@Override
+	public String resolveCurrentTenantIdentifier() {
+		return Tenants.current();
+	}
+
+	@Override
+	public boolean validateExistingCurrentSessions() {
+		return true;
+	}
+}
@@ -0,0 +1,52 @@
+package main.tenancy;
+
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Which catalog the current thread works on. Every catalog is a PostgreSQL schema with the tables of
+ * buildtables.sql; sessions opened inside {@link #in(String, Supplier)} read and write that schema.
+ * Outside of it, and on threads that never set one, the tenant is {@link #DEFAULT}.
+ */
+public final class Tenants {
+
+	public static final String DEFAULT = "public";
+
+	//lower case, so the name means the same quoted (setSchema) and unquoted (hand-written sql)
+	private static final Pattern NAME = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+
+	private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+	private Tenants() {
+	}
+
+	public static <T> T in(String tenant, Supplier<T> work) {
+		check(tenant);
+		String outer = CURRENT.get();
+		CURRENT.set(tenant);
+		try {
+			return work.get();
+		} finally {
+			if (outer == null) {
+				CURRENT.remove();
+			} else {
+				CURRENT.set(outer);
+			}
+		}
+	}
+
+	public static String current() {
+		String tenant = CURRENT.get();
+		return tenant == null ? DEFAULT : tenant;
+	}
+
+	/**
+	 * @throws IllegalArgumentException unless the name is a plain lower case schema name
+	 */
+	public static String check(String tenant) {
+		if (tenant == null || !NAME.matcher(tenant).matches()) {
+			throw new IllegalArgumentException("Not a tenant name: " + tenant);
+		}
+		return tenant;
+	}
+}
@@ -0,0 +1,211 @@
+package main.totals;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.event.spi.PreUpdateEvent;
+import org.hibernate.event.spi.PreUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+
+import main.models.Author;
+import main.models.AuthorAward;
+
+/**
+ * Keeps author_award_total in step with author_award, for every award hibernate inserts, updates or
+ * deletes.
+ * <p>
+ * The events only collect the change per author. The rows are written once, just before the transaction
+ * commits (after the last flush), in author id order: concurrent transactions then lock the total rows
+ * in the same order and can't deadlock, and a concurrent award write waits for the row lock instead of
+ * losing an increment. A new author gets its row in the transaction that creates it, so the later award
+ * writes only ever update. An author without a row (from before the table, or written with plain sql)
+ * gets one counted from its awards; if a concurrent transaction inserts it first, the change is added to
+ * that one instead (on conflict). Deleting an author takes its row with it (on delete cascade).
+ * <p>
+ * An award updated without hibernate having its previous state (session.update() of a detached award)
+ * is read before it is written: AuthorAward is @SelectBeforeUpdate, and when the flush didn't need the
+ * row (enhanced classes track their own dirty attributes) the pre-update event reads it. The snapshot is
+ * the session's, so it is read once either way.
+ * Writes that bypass hibernate (BulkLoader, AuthorDeleter, bulk HQL) maintain the table themselves.
+ */
+public class AwardTotalsListener implements PostInsertEventListener, PreUpdateEventListener, PostUpdateEventListener,
+		PostDeleteEventListener {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String INSERT_COUNTED = "insert into author_award_total (author_id, total_reward, award_count) "
+			+ "select cast(? as bigint), coalesce(sum(monetary_reward), 0), count(*) from author_award where author_id = ?";
+
+	/**
+	 * Counts one author's total from its awards and writes it, row or no row yet. Takes the author id twice.
+	 */
+	public static final String RECOUNT = INSERT_COUNTED + " on conflict (author_id) do update set "
+			+ "total_reward = excluded.total_reward, award_count = excluded.award_count";
+
+	private final Map<SharedSessionContractImplementor, Changes> changes = new ConcurrentHashMap<>();
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		if (event.getEntity() instanceof Author) {
+			changes(event.getSession()).created.add((Long) event.getId());
+		} else if (event.getEntity() instanceof AuthorAward) {
+			AuthorAward award = (AuthorAward) event.getEntity();
+			changes(event.getSession()).add(authorId(award.getAuthor()), award.getMonetaryReward(), 1);
+		}
+	}
+
+	@Override
+	public boolean onPreUpdate(PreUpdateEvent event) {
+		if (event.getEntity() instanceof AuthorAward && event.getOldState() == null) {
+			event.getSession().getPersistenceContext().getDatabaseSnapshot(event.getId(), event.getPersister());
+		}
+		return false;
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		if (!(event.getEntity() instanceof AuthorAward)) {
+			return;
+		}
+		Changes changes = changes(event.getSession());
+		int author = event.getPersister().getEntityMetamodel().getPropertyIndex("author");
+		int reward = event.getPersister().getEntityMetamodel().getPropertyIndex("monetaryReward");
+		Object[] oldState = event.getOldState();
+		if (oldState == null) {
+			//a detached award: the row as it was read before the update (hydrated, the author is its id)
+			EntityKey key = event.getSession().generateEntityKey(event.getId(), event.getPersister());
+			oldState = event.getSession().getPersistenceContext().getCachedDatabaseSnapshot(key);
+		}
+		if (oldState == null) {
+			throw new IllegalStateException("No previous state for award " + event.getId());
+		}
+		changes.add(authorId(oldState[author]), (Long) oldState[reward], -1);
+		changes.add(authorId(event.getState()[author]), (Long) event.getState()[reward], 1);
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		if (event.getEntity() instanceof Author) {
+			changes(event.getSession()).deleted.add((Long) event.getId());
+		} else if (event.getEntity() instanceof AuthorAward) {
+			int author = event.getPersister().getEntityMetamodel().getPropertyIndex("author");
+			int reward = event.getPersister().getEntityMetamodel().getPropertyIndex("monetaryReward");
+			changes(event.getSession()).add(authorId(event.getDeletedState()[author]),
+					(Long) event.getDeletedState()[reward], -1);
+		}
+	}
+
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return false;
+	}
+
+	private Changes changes(EventSource session) {
+		return changes.computeIfAbsent(session, s -> {
+			Changes created = new Changes();
+			session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) created);
+			session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, completed) -> changes.remove(completed));
+			return created;
+		});
+	}
+
+	private static Long authorId(Object author) {
+		if (author == null || author instanceof Long) {
+			return (Long) author;
+		}
+		if (author instanceof HibernateProxy) {
+			return (Long) ((HibernateProxy) author).getHibernateLazyInitializer().getIdentifier();
+		}
+		return ((Author) author).getId();
+	}
+
+	/**
+	 * What one transaction of one session did to the totals.
+	 */
+	private static class Changes implements BeforeTransactionCompletionProcess {
+
+		//author id -> {reward, count}
+		final Map<Long, long[]> deltas = new TreeMap<>();
+		final Set<Long> created = new TreeSet<>();
+		final Set<Long> deleted = new TreeSet<>();
+
+		void add(Long authorId, Long reward, int count) {
+			if (authorId == null) {
+				return;
+			}
+			long[] delta = deltas.computeIfAbsent(authorId, id -> new long[2]);
+			delta[0] += count * (reward == null ? 0 : reward);
+			delta[1] += count;
+		}
+
+		@Override
+		public void doBeforeTransactionCompletion(SessionImplementor session) {
+			deleted.forEach(id -> {
+				created.remove(id);
+				deltas.remove(id);
+			});
+			session.doWork(this::write);
+		}
+
+		private void write(Connection connection) throws SQLException {
+			Set<Long> missing = new TreeSet<>();
+			try (PreparedStatement update = connection.prepareStatement("update author_award_total "
+					+ "set total_reward = total_reward + ?, award_count = award_count + ? where author_id = ?")) {
+				Long[] updated = deltas.keySet().stream().filter(id -> !created.contains(id)).toArray(Long[]::new);
+				for (Long id : updated) {
+					update.setLong(1, deltas.get(id)[0]);
+					update.setLong(2, deltas.get(id)[1]);
+					update.setLong(3, id);
+					update.addBatch();
+				}
+				int[] rows = update.executeBatch();
+				for (int i = 0; i < rows.length; i++) {
+					//an author from before the table existed, or written with plain sql
+					if (rows[i] == 0) {
+						missing.add(updated[i]);
+					}
+				}
+			}
+			//the awards are flushed by now, so counting them includes this transaction's
+			try (PreparedStatement insert = connection.prepareStatement(INSERT_COUNTED)) {
+				for (Long id : created) {
+					insert.setLong(1, id);
+					insert.setLong(2, id);
+					insert.addBatch();
+				}
+				insert.executeBatch();
+			}
+			//another transaction can be creating the same missing row: then only this one's change is added to it
+			try (PreparedStatement upsert = connection.prepareStatement(INSERT_COUNTED + " on conflict (author_id) do update set "
+					+ "total_reward = author_award_total.total_reward + ?, award_count = author_award_total.award_count + ?")) {
+				for (Long id : missing) {
+					upsert.setLong(1, id);
+					upsert.setLong(2, id);
+					upsert.setLong(3, deltas.get(id)[0]);
+					upsert.setLong(4, deltas.get(id)[1]);
+					upsert.addBatch();
+				}
+				upsert.executeBatch();
+			}
+		}
+	}
+}
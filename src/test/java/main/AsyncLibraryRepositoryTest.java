@@ -0,0 +1,170 @@
+package main;
+
+import static main.TestAuthors.author;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.Session;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.zaxxer.hikari.HikariDataSource;
+
+import main.metrics.PoolMetrics;
+import main.models.Author;
+import main.repository.AsyncLibraryRepository;
+import main.tenancy.TenantConnectionProvider;
+
+public class AsyncLibraryRepositoryTest extends BaseTest {
+
+	private static final int REQUESTS = 10000;
+
+	@Autowired
+	private AsyncLibraryRepository repository;
+
+	@Autowired
+	private HikariDataSource dataSource;
+
+	@Autowired
+	private PoolMetrics poolMetrics;
+
+	@Autowired
+	private ThreadPoolExecutor libraryExecutor;
+
+	@Autowired
+	private TenantConnectionProvider tenantConnections;
+
+	@Test
+	public void tenThousandConcurrentRequestsShareAFewThreadsAndConnections() throws Exception {
+		List<Long> ids = new ArrayList<>();
+		Session session = getSession();
+		session.beginTransaction();
+		for (int i = 0; i < 100; i++) {
+			ids.add((Long) session.save(author("Async " + i).build()));
+		}
+		session.getTransaction().commit();
+		session.close();
+
+		Set<String> threads = ConcurrentHashMap.newKeySet();
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger mostRunning = new AtomicInteger();
+		List<CompletableFuture<String>> requests = new ArrayList<>();
+		for (int i = 0; i < REQUESTS; i++) {
+			long id = ids.get(i % ids.size());
+			requests.add(repository.submit(60000, s -> {
+				threads.add(Thread.currentThread().getName());
+				mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					return s.get(Author.class, id).getName();
+				} finally {
+					running.decrementAndGet();
+				}
+			}));
+		}
+		CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).get(2, TimeUnit.MINUTES);
+
+		assertThat(requests).allMatch(r -> r.join().startsWith("Async "));
+		//the work ran on the executor's threads, more of them than connections, yet no more ran at once than that
+		assertThat(threads.size()).isLessThanOrEqualTo(libraryExecutor.getMaximumPoolSize());
+		assertThat(threads.size()).isGreaterThan(dataSource.getMaximumPoolSize());
+		assertThat(mostRunning.get()).isLessThanOrEqualTo(dataSource.getMaximumPoolSize());
+		assertThat(poolMetrics.getTotalConnections()).isLessThanOrEqualTo(dataSource.getMaximumPoolSize());
+	}
+
+	@Test
+	public void aSlowStatementIsCancelledAtTheDeadline() throws Exception {
+		long start = System.nanoTime();
+		CompletableFuture<Object> slow = repository.submit(1000,
+				s -> s.createNativeQuery("select 1 from pg_sleep(10)").getSingleResult());
+		try {
+			slow.get();
+			fail();
+		} catch (ExecutionException e) {
+			//the statement was cancelled by its query timeout
+		}
+		assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5000);
+	}
+
+	@Test
+	public void queuedRequestsGiveUpWithoutTouchingTheDatabase() throws Exception {
+		//keep every connection busy for a second, then queue one that only has 100ms
+		List<CompletableFuture<Object>> busy = new ArrayList<>();
+		for (int i = 0; i < dataSource.getMaximumPoolSize(); i++) {
+			busy.add(repository.submit(5000, s -> s.createNativeQuery("select 1 from pg_sleep(1)").getSingleResult()));
+		}
+		AtomicInteger ran = new AtomicInteger();
+		CompletableFuture<Integer> late = repository.submit(100, s -> ran.incrementAndGet());
+		try {
+			late.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertThat(e.getCause()).isInstanceOf(TimeoutException.class);
+		}
+		assertThat(ran.get()).isZero();
+		CompletableFuture.allOf(busy.toArray(new CompletableFuture[0])).get();
+	}
+
+	@Test
+	public void aFullQueueRejectsAtOnce() throws Exception {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+		AsyncLibraryRepository small = new AsyncLibraryRepository(sessionFactory, dataSource, executor, tenantConnections,
+				1, 5000);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Boolean> running = small.submit(5000, s -> Uninterruptibles.awaitUninterruptibly(release, 5, TimeUnit.SECONDS));
+		CompletableFuture<Integer> queued = small.submit(5000, s -> 1);
+		CompletableFuture<Integer> rejected = small.submit(5000, s -> 1);
+
+		assertThat(rejected.isCompletedExceptionally()).isTrue();
+		try {
+			rejected.join();
+			fail();
+		} catch (CompletionException e) {
+			assertThat(e.getCause()).isInstanceOf(RejectedExecutionException.class);
+		}
+		release.countDown();
+		assertThat(running.get()).isTrue();
+		assertThat(queued.get()).isEqualTo(1);
+		executor.shutdown();
+	}
+
+	@Test
+	public void aCallWaitingBehindItsTenantTimesOutAtItsDeadline() throws Exception {
+		//one call at a time for public in this repository, and that one is busy until released
+		TenantConnectionProvider oneEach = new TenantConnectionProvider(dataSource, 1, 1, 5000);
+		AsyncLibraryRepository small = new AsyncLibraryRepository(sessionFactory, dataSource, libraryExecutor, oneEach,
+				10, 5000);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Boolean> running = small.submit(5000, s -> Uninterruptibles.awaitUninterruptibly(release, 5, TimeUnit.SECONDS));
+		AtomicInteger ran = new AtomicInteger();
+		long start = System.nanoTime();
+		CompletableFuture<Integer> waiting = small.submit(200, s -> ran.incrementAndGet());
+		try {
+			waiting.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertThat(e.getCause()).isInstanceOf(TimeoutException.class);
+		}
+		assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+		assertThat(running.isDone()).isFalse();
+		release.countDown();
+		assertThat(running.get()).isTrue();
+		assertThat(ran.get()).isZero();
+		small.close();
+	}
+}
@@ -0,0 +1,112 @@
+package main;
+
+import static main.TestAuthors.author;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.hibernate.Session;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import main.bulk.AuthorDeleter;
+import main.bulk.BulkDeleteResult;
+import main.models.Author;
+import main.models.Book;
+
+public class AuthorDeleterTest extends BaseTest {
+
+	private static final int AWARDS = 3000;
+
+	@Autowired
+	private AuthorDeleter deleter;
+
+	private long decorated;
+	private long survivor;
+	private long sharedBook;
+
+	@Before
+	public void setUpAuthors() {
+		Book shared = new Book();
+		shared.setTitle("Co-written");
+		Author first = author("Decorated").books(10).awards(AWARDS).build();
+		first.addBook(shared);
+		Author second = author("Survivor").books(10).awards(1).build();
+		second.addBook(shared);
+		Session session = getSession();
+		session.beginTransaction();
+		decorated = (Long) session.save(first);
+		survivor = (Long) session.save(second);
+		sharedBook = shared.getId();
+		session.getTransaction().commit();
+		session.close();
+	}
+
+	@Test
+	public void aFewStatementsRegardlessOfAwards() {
+		BulkDeleteResult result = deleter.deleteByIds(Collections.singleton(decorated));
+
+		//two lookups, four deletes
+		assertThat(result.getStatements()).isEqualTo(6);
+		assertThat(result.getAuthors()).isEqualTo(1);
+		assertThat(result.getAwards()).isEqualTo(AWARDS);
+		//its own 10 books and the shared one
+		assertThat(result.getAuthorships()).isEqualTo(11);
+		assertThat(result.getBooks()).isEqualTo(10);
+		assertThat(count("author_award")).isEqualTo(1);
+		assertThat(count("book")).isEqualTo(11);
+	}
+
+	@Test
+	public void sharedBooksStayWithTheirOtherAuthors() {
+		//fill the caches with everything that is about to change
+		Session session = getSession();
+		Author kept = session.get(Author.class, survivor);
+		assertThat(session.get(Book.class, sharedBook).getAuthors()).hasSize(2);
+		assertThat(kept.getBooks()).hasSize(11);
+		assertThat(getAuthorsByName("Decorated", session)).hasSize(1);
+		session.close();
+
+		deleter.deleteWhere((cb, a) -> cb.equal(a.get("name"), "Decorated"));
+
+		session = getSession();
+		assertThat(session.get(Author.class, decorated)).isNull();
+		assertThat(getAuthorsByName("Decorated", session)).isEmpty();
+		Book shared = session.get(Book.class, sharedBook);
+		assertThat(shared.getAuthors()).extracting(Author::getName).containsOnly("Survivor");
+		assertThat(session.get(Author.class, survivor).getBooks()).hasSize(11);
+		session.close();
+	}
+
+	@Test
+	public void fewerStatementsThanCascadingSessionDelete() {
+		Author other = author("Cascaded").books(10).awards(AWARDS).build();
+		Session session = getSession();
+		session.beginTransaction();
+		long cascaded = (Long) session.save(other);
+		session.getTransaction().commit();
+		session.close();
+
+		//the author and its collections have to be loaded to cascade, as they would be for any author not in the cache
+		sessionFactory.getCache().evictAllRegions();
+		SqlRecorder sql = new SqlRecorder();
+		session = sessionFactory.withOptions().statementInspector(sql).openSession();
+		session.beginTransaction();
+		session.delete(session.get(Author.class, cascaded));
+		session.getTransaction().commit();
+		session.close();
+
+		BulkDeleteResult result = deleter.deleteByIds(Arrays.asList(decorated));
+		assertThat(sql.getStatements().size()).isGreaterThan(result.getStatements());
+	}
+
+	private long count(String table) {
+		Session session = getSession();
+		long count = ((BigInteger) session.createNativeQuery("select count(*) from " + table).getSingleResult()).longValue();
+		session.close();
+		return count;
+	}
+}
@@ -0,0 +1,68 @@
+package main;
+
+import static main.TestAuthors.author;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.SessionBuilder;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import main.models.Author;
+import main.repository.AuthorRepository;
+import main.repository.AuthorSummary;
+import main.session.ReadOnlySessionTemplate;
+
+public class AuthorSummaryTest extends BaseTest {
+
+	@Autowired
+	private AuthorRepository authors;
+
+	@Test
+	public void summariesCountBooksAndAwardsWithoutLoadingEntities() {
+		Session session = getSession();
+		session.beginTransaction();
+		session.save(author("Alice").books(3).awards(2).build());
+		session.save(author("Bob").awards(1).build());
+		session.save(author("Carol").books(2).build());
+		session.getTransaction().commit();
+		session.close();
+		sessionFactory.getStatistics().clear();
+
+		List<AuthorSummary> summaries = authors.findSummaries(0, 10);
+
+		assertThat(summaries).extracting(AuthorSummary::getName).containsExactly("Alice", "Bob", "Carol");
+		assertThat(summaries).extracting(AuthorSummary::getBookCount).containsExactly(3, 0, 2);
+		assertThat(summaries).extracting(AuthorSummary::getAwardCount).containsExactly(2, 1, 0);
+		assertThat(sessionFactory.getStatistics().getEntityLoadCount()).isEqualTo(0);
+		assertThat(sessionFactory.getStatistics().getCollectionLoadCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void aPageIsOneQuery() {
+		Session session = getSession();
+		session.beginTransaction();
+		for (int i = 0; i < 100; i++) {
+			session.save(author(String.format("Author %03d", i)).books(2).awards(1).build());
+		}
+		session.getTransaction().commit();
+		session.close();
+
+		SqlRecorder sql = new SqlRecorder();
+		AuthorRepository recorded = new AuthorRepository(new ReadOnlySessionTemplate(sessionFactory) {
+			@Override
+			protected SessionBuilder<?> sessionBuilder() {
+				return super.sessionBuilder().statementInspector(sql);
+			}
+		});
+		sessionFactory.getStatistics().clear();
+		List<AuthorSummary> page = recorded.findSummaries(20, 20);
+
+		assertThat(sql.getStatements()).hasSize(1);
+		assertThat(sessionFactory.getStatistics().getEntityLoadCount()).isEqualTo(0);
+		assertThat(page).hasSize(20);
+		assertThat(page).extracting(AuthorSummary::getName).startsWith("Author 020").endsWith("Author 039");
+	}
+}
@@ -0,0 +1,198 @@
+package main;
+
+import static main.TestAuthors.author;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.hibernate.Session;
+import org.hibernate.SessionBuilder;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import main.bulk.AuthorRecord;
+import main.bulk.BulkLoader;
+import main.models.Author;
+import main.models.AuthorAward;
+import main.repository.AuthorEarnings;
+import main.repository.AuthorRepository;
+import main.session.ReadOnlySessionTemplate;
+
+public class AwardTotalsTest extends BaseTest {
+
+	@Autowired
+	private AuthorRepository authors;
+
+	@Autowired
+	private BulkLoader bulkLoader;
+
+	@Test
+	public void totalsFollowEveryKindOfAwardWrite() {
+		Session session = getSession();
+		session.beginTransaction();
+		Author rich = author("Rich").rewards(100L, 250L, null).build();
+		Author modest = author("Modest").rewards(10L).build();
+		Author doomed = author("Doomed").rewards(5L).build();
+		Author empty = author("Empty").build();
+		for (Author author : Arrays.asList(rich, modest, doomed, empty)) {
+			session.save(author);
+		}
+		session.getTransaction().commit();
+		assertThat(totals()).isEqualTo(recomputed());
+
+		session.beginTransaction();
+		AuthorAward raised = modest.getAuthorAward().iterator().next();
+		raised.setMonetaryReward(40L);
+		AuthorAward moved = rich.getAuthorAward().stream().filter(a -> Long.valueOf(100).equals(a.getMonetaryReward())).findFirst().get();
+		rich.getAuthorAward().remove(moved);
+		moved.setAuthor(empty);
+		AuthorAward removed = rich.getAuthorAward().stream().filter(a -> a.getMonetaryReward() == null).findFirst().get();
+		rich.getAuthorAward().remove(removed);
+		session.delete(removed);
+		session.delete(doomed);
+		session.getTransaction().commit();
+		session.close();
+		assertThat(totals()).isEqualTo(recomputed());
+
+		//detached awards updated without their previous state, one of them moved back
+		raised.setMonetaryReward(7L);
+		moved.setAuthor(modest);
+		session = getSession();
+		session.beginTransaction();
+		session.update(raised);
+		session.update(moved);
+		session.getTransaction().commit();
+		session.close();
+		assertThat(totals()).isEqualTo(recomputed());
+
+		assertThat(authors.findTopEarners(10)).extracting(AuthorEarnings::getName).containsExactly("Rich", "Modest", "Empty");
+		assertThat(authors.findTopEarners(1).get(0).getTotalReward()).isEqualTo(250);
+	}
+
+	@Test
+	public void concurrentAwardWritesAddUp() throws Exception {
+		writeConcurrently(contestedAuthors());
+	}
+
+	@Test
+	public void concurrentWritesCreateMissingTotalsOnce() throws Exception {
+		List<Long> ids = contestedAuthors();
+		//as if they were written before the table existed
+		Session session = getSession();
+		session.beginTransaction();
+		session.createNativeQuery("delete from author_award_total").executeUpdate();
+		session.getTransaction().commit();
+		session.close();
+
+		writeConcurrently(ids);
+	}
+
+	@Test
+	public void theLeaderboardDoesNotReadTheAwards() {
+		long small = leaderboardMicros(1000);
+		clearTable();
+		long large = leaderboardMicros(100000);
+		//a hundred times the awards, about the same time (with a floor for timer noise on tiny numbers)
+		assertThat(large).isLessThan(5 * Math.max(small, 500));
+
+		Session session = getSession();
+		session.beginTransaction();
+		session.createNativeQuery("analyze author_award_total").executeUpdate();
+		session.createNativeQuery("analyze author").executeUpdate();
+		session.getTransaction().commit();
+		session.close();
+		SqlRecorder sql = new SqlRecorder();
+		AuthorRepository recorded = new AuthorRepository(new ReadOnlySessionTemplate(sessionFactory) {
+			@Override
+			protected SessionBuilder<?> sessionBuilder() {
+				return super.sessionBuilder().statementInspector(sql);
+			}
+		});
+		assertThat(recorded.findTopEarners(10)).hasSize(10);
+
+		String plan = String.join("\n", explain(sql.getStatements().get(0), 10));
+		assertThat(plan).contains("author_award_total_rank_idx").doesNotContain("Sort");
+	}
+
+	private List<Long> contestedAuthors() {
+		List<Long> ids = new ArrayList<>();
+		Session session = getSession();
+		session.beginTransaction();
+		for (int i = 0; i < 5; i++) {
+			ids.add((Long) session.save(author("Contested " + i).build()));
+		}
+		session.getTransaction().commit();
+		session.close();
+		return ids;
+	}
+
+	//8 threads, 50 transactions each, every one adding awards to two of the authors
+	private void writeConcurrently(List<Long> ids) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<?>> writers = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			writers.add(executor.submit(() -> {
+				for (int i = 0; i < 50; i++) {
+					Session writer = getSession();
+					writer.beginTransaction();
+					//two authors per transaction, in random order
+					for (int j = 0; j < 2; j++) {
+						AuthorAward award = new AuthorAward();
+						award.setAwardDescription("Contested prize");
+						award.setMonetaryReward(ThreadLocalRandom.current().nextLong(1, 1000));
+						award.setAuthor(writer.load(Author.class, ids.get(ThreadLocalRandom.current().nextInt(ids.size()))));
+						writer.save(award);
+					}
+					writer.getTransaction().commit();
+					writer.close();
+				}
+				return null;
+			}));
+		}
+		for (Future<?> writer : writers) {
+			writer.get();
+		}
+		executor.shutdown();
+
+		assertThat(totals()).isEqualTo(recomputed());
+		assertThat(totals().stream().mapToLong(row -> Long.parseLong(row.split(" ")[2])).sum()).isEqualTo(8 * 50 * 2);
+	}
+
+	private long leaderboardMicros(int awards) {
+		bulkLoader.load(IntStream.range(0, awards / 10).mapToObj(i -> new AuthorRecord("Earner " + i, new ArrayList<>(),
+				IntStream.range(0, 10).mapToObj(j -> new AuthorRecord.Award("Prize", (long) (i * j))).collect(Collectors.toList()))));
+		assertThat(totals()).isEqualTo(recomputed());
+		authors.findTopEarners(10);
+		long start = System.nanoTime();
+		for (int i = 0; i < 100; i++) {
+			assertThat(authors.findTopEarners(10)).hasSize(10);
+		}
+		return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / 100;
+	}
+
+	private List<String> totals() {
+		return rows("select author_id, total_reward, award_count from author_award_total order by author_id");
+	}
+
+	private List<String> recomputed() {
+		return rows("select a.id, coalesce(sum(aw.monetary_reward), 0), count(aw.id) from author a "
+				+ "left join author_award aw on aw.author_id = a.id group by a.id order by a.id");
+	}
+
+	private List<String> rows(String sql) {
+		Session session = getSession();
+		@SuppressWarnings("unchecked")
+		List<Object[]> rows = session.createNativeQuery(sql).list();
+		session.close();
+		return rows.stream().map(row -> row[0] + " " + row[1] + " " + row[2]).collect(Collectors.toList());
+	}
+}
@@ -1,13 +1,10 @@
 package main;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
 import java.util.List;
 
-import javax.persistence.EntityManagerFactory;
-import javax.persistence.TypedQuery;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Root;
-
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.junit.Before;
@@ -16,11 +13,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import main.metrics.StatementCounter;
 import main.models.Author;
 
 @RunWith(SpringRunner.class)
 @ContextConfiguration(classes = { Main.class })
 public abstract class BaseTest {
+
+	static {
+		TestDatabase.start();
+	}
 	
 	@Autowired
 	protected SessionFactory sessionFactory;
@@ -30,10 +32,10 @@ public abstract class BaseTest {
 		Session session = sessionFactory.openSession();
 		org.hibernate.Transaction tx = session.beginTransaction();
 
-		session.createNativeQuery("delete from book_authorship").executeUpdate();
-		session.createNativeQuery("delete from author_award").executeUpdate();
-		session.createNativeQuery("delete from author").executeUpdate();
-		session.createNativeQuery("delete from book").executeUpdate();
+		//one statement, and it doesn't have to scan what the last test left behind. It needs every table to
+		//itself though: a session a test left open in a transaction fails this test instead of hanging it.
+		session.createNativeQuery("set local lock_timeout = '10s'").executeUpdate();
+		session.createNativeQuery("truncate book_authorship, author_award, author_award_total, author, book").executeUpdate();
 		tx.commit();
 		session.close();
 	}
@@ -42,13 +44,34 @@ public abstract class BaseTest {
 		return sessionFactory.openSession();
 	}
 	
+	protected Session getSession(StatementCounter counter) {
+		return sessionFactory.withOptions().eventListeners(counter).openSession();
+	}
+	
+	/**
+	 * The plan PostgreSQL picks for a statement, e.g. one a SqlRecorder caught, with its parameters bound.
+	 */
+	protected List<String> explain(String sql, Object... parameters) {
+		List<String> plan = new ArrayList<>();
+		Session session = getSession();
+		session.doWork(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement("explain " + sql)) {
+				for (int i = 0; i < parameters.length; i++) {
+					statement.setObject(i + 1, parameters[i]);
+				}
+				try (ResultSet rows = statement.executeQuery()) {
+					while (rows.next()) {
+						plan.add(rows.getString(1));
+					}
+				}
+			}
+		});
+		session.close();
+		return plan;
+	}
+
 	protected List<Author> getAuthorsByName(String name, Session session) {
-		CriteriaBuilder cb = session.getCriteriaBuilder();
-		CriteriaQuery<Author> q = cb.createQuery(Author.class);
-		Root<Author> c = q.from(Author.class);
-		q.where(cb.equal(c.<String>get("name"), name));
-		TypedQuery<Author> authorQuery = session.createQuery(q);
-		return authorQuery.getResultList();
+		return session.createNamedQuery("Author.byName", Author.class).setParameter("name", name).getResultList();
 	}
 
 }
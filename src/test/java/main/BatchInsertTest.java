@@ -0,0 +1,50 @@
+package main;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.junit.Test;
+
+import main.metrics.StatementCounter;
+import main.models.Author;
+import main.models.Book;
+
+public class BatchInsertTest extends BaseTest {
+	
+	@Test
+	public void savingALargeAuthorGraphGoesOutInBatches() {
+		//Main skips the jdbc metadata at startup, which on its own would have turned batching off
+		assertThat(sessionFactory.getSessionFactoryOptions().getJdbcBatchSize()).isEqualTo(50);
+
+		Author author = new Author();
+		author.setName("Prolific");
+		Set<Book> books = new HashSet<>();
+		for (int i = 0; i < 1000; i++) {
+			Book book = new Book();
+			book.setTitle("Volume " + i);
+			books.add(book);
+		}
+		author.setBooks(books);
+		
+		StatementCounter counter = new StatementCounter();
+		Session session = getSession(counter);
+		session.beginTransaction();
+		session.save(author);
+		session.getTransaction().commit();
+		
+		//With IDENTITY every book was its own insert and every book_authorship row its own insert too - about 2000 round trips.
+		//Now it's one sequence call per 50 ids, and one batch per 50 books and per 50 link rows.
+		assertThat(counter.getRoundTrips()).isLessThan(100);
+		assertThat(counter.getBatches()).isGreaterThanOrEqualTo(40);
+		
+		//and everything actually made it in.
+		BigInteger links = (BigInteger) session.createNativeQuery("select count(*) from book_authorship").getSingleResult();
+		assertThat(links.intValue()).isEqualTo(1000);
+		session.close();
+	}
+
+}
@@ -0,0 +1,114 @@
+package main;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigInteger;
+
+import org.hibernate.Session;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import main.models.Author;
+import main.models.Book;
+import main.session.BatchSession;
+import main.session.BatchSessions;
+
+public class BatchSessionTest extends BaseTest {
+
+	//a million authors with two books each: 1M author, 2M book and 2M book_authorship rows
+	private static final int IMPORTED_AUTHORS = 1000000;
+
+	@Autowired
+	private BatchSessions batchSessions;
+
+	@Test
+	@Category(LargeVolume.class)
+	public void fiveMillionRowsFitInTheTestHeap() {
+		long mostManaged = 0;
+		try (BatchSession batch = batchSessions.open()) {
+			for (int i = 0; i < IMPORTED_AUTHORS; i++) {
+				Author author = new Author();
+				author.setName("Imported " + i);
+				for (int j = 0; j < 2; j++) {
+					Book book = new Book();
+					book.setTitle("Imported " + i + "-" + j);
+					author.addBook(book);
+				}
+				batch.save(author);
+				mostManaged = Math.max(mostManaged, batch.getManagedEntities());
+			}
+			batch.commit();
+		}
+		assertThat(usedHeapMegabytes()).isLessThan(Runtime.getRuntime().maxMemory() / (1024 * 1024) / 2);
+		//1000 by default, the last author's books may just overshoot it
+		assertThat(mostManaged).isLessThan(1003);
+		assertThat(count("author")).isEqualTo(IMPORTED_AUTHORS);
+		assertThat(count("book_authorship")).isEqualTo(2 * IMPORTED_AUTHORS);
+	}
+
+	@Test
+	public void keptEntitiesStayAttachedAcrossChunks() {
+		Book anthology = new Book();
+		anthology.setTitle("Anthology");
+		Session session = getSession();
+		session.beginTransaction();
+		session.save(anthology);
+		session.getTransaction().commit();
+		session.close();
+
+		try (BatchSession batch = batchSessions.open(100, Long.MAX_VALUE)) {
+			batch.keep(anthology);
+			for (int i = 0; i < 350; i++) {
+				Author author = new Author();
+				author.setName("Contributor " + i);
+				author.addBook(anthology);
+				batch.save(author);
+				assertThat(batch.getSession().contains(anthology)).isTrue();
+			}
+			batch.commit();
+			assertThat(batch.getChunks()).isEqualTo(4);
+		}
+		assertThat(count("book")).isEqualTo(1);
+		assertThat(count("book_authorship")).isEqualTo(350);
+	}
+
+	@Test
+	public void theByteEstimateEndsChunksToo() {
+		try (BatchSession batch = batchSessions.open(Integer.MAX_VALUE, 100 * 1024)) {
+			for (int i = 0; i < 1000; i++) {
+				Author author = new Author();
+				author.setName("Estimated " + i);
+				batch.save(author);
+				assertThat(batch.getEstimatedBytes()).isLessThan(100 * 1024);
+			}
+			batch.commit();
+			assertThat(batch.getChunks()).isGreaterThan(1);
+		}
+		assertThat(count("author")).isEqualTo(1000);
+	}
+
+	@Test
+	public void closingWithoutCommitOnlyLosesTheLastChunk() {
+		try (BatchSession batch = batchSessions.open(100, Long.MAX_VALUE)) {
+			for (int i = 0; i < 150; i++) {
+				Author author = new Author();
+				author.setName("Interrupted " + i);
+				batch.save(author);
+			}
+		}
+		assertThat(count("author")).isEqualTo(100);
+	}
+
+	private long count(String table) {
+		Session session = getSession();
+		long count = ((BigInteger) session.createNativeQuery("select count(*) from " + table).getSingleResult()).longValue();
+		session.close();
+		return count;
+	}
+
+	private static long usedHeapMegabytes() {
+		System.gc();
+		return (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / (1024 * 1024);
+	}
+}
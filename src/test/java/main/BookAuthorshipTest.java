@@ -0,0 +1,109 @@
+package main;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.junit.Before;
+import org.junit.Test;
+
+import main.models.Author;
+import main.models.Book;
+
+public class BookAuthorshipTest extends BaseTest {
+
+	private static final int BOOKS = 3000;
+
+	private long authorId;
+	private long spareBookId;
+
+	@Before
+	public void setUpProlificAuthor() {
+		Author author = new Author();
+		author.setName("Thousands");
+		Set<Book> books = new HashSet<>();
+		for (int i = 0; i < BOOKS; i++) {
+			Book book = new Book();
+			book.setTitle("Volume " + i);
+			books.add(book);
+		}
+		author.setBooks(books);
+		Book spare = new Book();
+		spare.setTitle("Not written by anyone yet");
+
+		Session session = getSession();
+		session.beginTransaction();
+		authorId = (Long) session.save(author);
+		spareBookId = (Long) session.save(spare);
+		session.getTransaction().commit();
+		session.close();
+	}
+
+	@Test
+	public void addingOrRemovingOneBookIsOneRow() {
+		SqlRecorder sql = new SqlRecorder();
+		Session session = sessionFactory.withOptions().statementInspector(sql).openSession();
+		session.beginTransaction();
+		Author author = session.get(Author.class, authorId);
+		Book spare = session.get(Book.class, spareBookId);
+		author.addBook(spare);
+		session.getTransaction().commit();
+
+		assertThat(sql.count("insert", "book_authorship")).isEqualTo(1);
+		assertThat(sql.count("delete", "book_authorship")).isZero();
+
+		sql.clear();
+		session.beginTransaction();
+		author.removeBook(spare);
+		session.getTransaction().commit();
+		session.close();
+
+		assertThat(sql.count("delete", "book_authorship")).isEqualTo(1);
+		assertThat(sql.count("insert", "book_authorship")).isZero();
+	}
+
+	@Test
+	public void mergingADetachedAuthorLeavesTheLinksAlone() {
+		Session session = getSession();
+		Author detached = session.get(Author.class, authorId);
+		assertThat(detached.getBooks()).hasSize(BOOKS);
+		session.close();
+
+		detached.setName("Thousands, revised");
+		//merge has to load the author and its links from the database, not from the cache
+		sessionFactory.getCache().evictAllRegions();
+		SqlRecorder sql = new SqlRecorder();
+		sessionFactory.getStatistics().clear();
+		session = sessionFactory.withOptions().statementInspector(sql).openSession();
+		session.beginTransaction();
+		session.merge(detached);
+		session.getTransaction().commit();
+		session.close();
+
+		assertThat(sql.count("update", "author")).isEqualTo(1);
+		assertThat(sql.count("insert", "book_authorship")).isZero();
+		assertThat(sql.count("delete", "book_authorship")).isZero();
+		assertThat(sessionFactory.getStatistics().getCollectionRecreateCount()).isZero();
+	}
+
+	@Test
+	public void replacingTheWholeSetRewritesEveryRow() {
+		//the thing to avoid, kept here so nobody is surprised by it
+		SqlRecorder sql = new SqlRecorder();
+		sessionFactory.getStatistics().clear();
+		Session session = sessionFactory.withOptions().statementInspector(sql).openSession();
+		session.beginTransaction();
+		Author author = session.get(Author.class, authorId);
+		author.setBooks(new HashSet<>(author.getBooks()));
+		session.getTransaction().commit();
+		session.close();
+
+		//delete them all, then insert all 3000 again
+		assertThat(sql.count("delete", "book_authorship")).isEqualTo(1);
+		assertThat(sql.count("insert", "book_authorship")).isGreaterThanOrEqualTo(1);
+		assertThat(sessionFactory.getStatistics().getCollectionRecreateCount()).isEqualTo(1);
+	}
+
+}
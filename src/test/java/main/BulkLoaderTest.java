@@ -0,0 +1,97 @@
+package main;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.hibernate.Session;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import main.bulk.AuthorRecord;
+import main.bulk.BulkLoadResult;
+import main.bulk.BulkLoader;
+import main.models.Author;
+
+public class BulkLoaderTest extends BaseTest {
+
+	private static final int AUTHORS = 50000;
+
+	@Autowired
+	private BulkLoader bulkLoader;
+
+	@Test
+	public void copiesAuthorsBooksAndAwards() {
+		//prime the query cache with "nobody by that name"
+		Session session = getSession();
+		assertThat(getAuthorsByName("Dumped 7", session)).isEmpty();
+		session.close();
+
+		BulkLoadResult result = bulkLoader.load(IntStream.range(0, AUTHORS).mapToObj(i -> new AuthorRecord("Dumped " + i,
+				Arrays.asList("First of " + i, "Second of " + i),
+				Collections.singletonList(new AuthorRecord.Award("Prize \"" + i + "\"", (long) i)))));
+
+		assertThat(result.getRows()).isEqualTo(6L * AUTHORS);
+		assertThat(count("author")).isEqualTo(AUTHORS);
+		assertThat(count("book")).isEqualTo(2 * AUTHORS);
+		assertThat(count("book_authorship")).isEqualTo(2 * AUTHORS);
+		assertThat(count("author_award")).isEqualTo(AUTHORS);
+		assertThat(count("author_award_total")).isEqualTo(AUTHORS);
+
+		//hibernate sees the rows (the cached empty result was evicted) and the graph is wired up
+		session = getSession();
+		Author dumped = getAuthorsByName("Dumped 7", session).get(0);
+		assertThat(dumped.getBooks()).extracting("title").containsOnly("First of 7", "Second of 7");
+		assertThat(dumped.getAuthorAward()).extracting("awardDescription").containsOnly("Prize \"7\"");
+		Object[] total = (Object[]) session.createNativeQuery("select total_reward, award_count from author_award_total where author_id = :id")
+				.setParameter("id", dumped.getId())
+				.getSingleResult();
+		assertThat(((Number) total[0]).longValue()).isEqualTo(7);
+		assertThat(((Number) total[1]).longValue()).isEqualTo(1);
+		session.close();
+
+		//and ids handed out by hibernate afterwards don't collide with the copied ones
+		Author later = new Author();
+		later.setName("After the dump");
+		session = getSession();
+		session.beginTransaction();
+		session.save(later);
+		session.getTransaction().commit();
+		session.close();
+		assertThat(count("author")).isEqualTo(AUTHORS + 1);
+	}
+
+	@Test
+	public void refusesASequenceHibernateCouldStillStartAtOne() {
+		alterStart("author_seq", 1);
+		try {
+			assertThatThrownBy(() -> bulkLoader.load(Stream.of(new AuthorRecord("Early", Collections.emptyList(), Collections.emptyList()))))
+					.isInstanceOf(IllegalStateException.class)
+					.hasMessageContaining("author_seq");
+			assertThat(count("author")).isZero();
+		} finally {
+			alterStart("author_seq", 50);
+		}
+	}
+
+	private void alterStart(String sequence, int start) {
+		Session session = getSession();
+		session.beginTransaction();
+		session.createNativeQuery("alter sequence " + sequence + " start with " + start).executeUpdate();
+		session.getTransaction().commit();
+		session.close();
+	}
+
+	private int count(String table) {
+		Session session = getSession();
+		BigInteger count = (BigInteger) session.createNativeQuery("select count(*) from " + table).getSingleResult();
+		session.close();
+		return count.intValue();
+	}
+
+}
@@ -0,0 +1,174 @@
+package main;
+
+import static main.TestAuthors.author;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.google.common.collect.Sets;
+
+import main.bulk.BulkMerger;
+import main.models.Author;
+import main.models.AuthorAward;
+import main.models.Book;
+
+/**
+ * Every scenario is played twice on the same data, once with session.merge() per author and once with
+ * {@link BulkMerger}, and the database has to end up the same.
+ */
+public class BulkMergeTest extends BaseTest {
+
+	@Autowired
+	private BulkMerger bulkMerger;
+
+	@Test
+	public void renamingADetachedCopy() {
+		assertSameAsMerge(session -> {
+			Author alex = new Author();
+			alex.setName("Alex");
+			session.save(alex);
+		}, authors -> {
+			//like MergeUpdateTest.updateResultsInNonUniqueException, a copy made from scratch with the same id
+			Author copy = new Author();
+			copy.setId(authors.get(0).getId());
+			copy.setName("New Name");
+			authors.set(0, copy);
+		});
+	}
+
+	@Test
+	public void changingAuthorsThatShareABook() {
+		assertSameAsMerge(session -> {
+			Book book = new Book();
+			book.setTitle("Bonjour!");
+			Author author = new Author();
+			author.setName("CatsElbow");
+			author.setBooks(Sets.newHashSet(book));
+			Author secondAuthor = new Author();
+			secondAuthor.setName("Frenchie");
+			secondAuthor.setBooks(Sets.newHashSet(book));
+			session.save(author);
+			session.save(secondAuthor);
+		}, authors -> {
+			for (Author author : authors) {
+				author.setName(author.getName() + "Revised");
+				author.getBooks().forEach(b -> b.setTitle("Bonsoir!"));
+			}
+		});
+	}
+
+	@Test
+	public void addingAndRemovingBooksAndAwards() {
+		assertSameAsMerge(session -> {
+			for (int i = 0; i < 5; i++) {
+				session.save(author("Author " + i).books(3).awards(3).build());
+			}
+		}, authors -> {
+			Author first = authors.get(0);
+			Book moved = first.getBooks().iterator().next();
+			first.getBooks().remove(moved);
+			authors.get(1).getBooks().add(moved);
+			Book brandNew = new Book();
+			brandNew.setTitle("Brand new");
+			authors.get(2).getBooks().add(brandNew);
+			AuthorAward award = new AuthorAward();
+			award.setAwardDescription("Late prize");
+			award.setAuthor(authors.get(3));
+			authors.get(3).getAuthorAward().add(award);
+			authors.get(4).getAuthorAward().forEach(a -> a.setAwardDescription("Revised citation"));
+		});
+	}
+
+	@Test
+	public void aThousandAuthorsAreAHandfulOfSelects() {
+		Session session = getSession();
+		session.beginTransaction();
+		for (int i = 0; i < 1000; i++) {
+			session.save(author("Author " + i).books(2).awards(2).build());
+		}
+		session.getTransaction().commit();
+		session.close();
+		List<Author> authors = detachAll();
+		authors.forEach(a -> a.setName(a.getName() + " revised"));
+		sessionFactory.getCache().evictAllRegions();
+
+		SqlRecorder sql = new SqlRecorder();
+		session = sessionFactory.withOptions().statementInspector(sql).openSession();
+		session.beginTransaction();
+		bulkMerger.mergeAll(session, authors);
+		session.getTransaction().commit();
+		session.close();
+
+		//authors, their books, their awards, then the books and awards by id: 1 + 2 + 2 + 2
+		assertThat(sql.getStatements().stream().filter(s -> s.startsWith("select")).count()).isLessThanOrEqualTo(7);
+		session = getSession();
+		assertThat(session.createQuery("select count(a) from Author a where a.name like '% revised'", Long.class)
+				.getSingleResult()).isEqualTo(1000L);
+		session.close();
+	}
+
+	private void assertSameAsMerge(Consumer<Session> setUp, Consumer<List<Author>> change) {
+		List<String> oneByOne = play(setUp, change, (session, authors) -> authors.forEach(session::merge));
+		clearTable();
+		List<String> bulk = play(setUp, change, (session, authors) -> bulkMerger.mergeAll(session, authors));
+		assertThat(bulk).isEqualTo(oneByOne);
+	}
+
+	private List<String> play(Consumer<Session> setUp, Consumer<List<Author>> change, BiConsumer<Session, List<Author>> merge) {
+		Session session = getSession();
+		session.beginTransaction();
+		setUp.accept(session);
+		session.getTransaction().commit();
+		session.close();
+
+		List<Author> authors = detachAll();
+		change.accept(authors);
+
+		session = getSession();
+		session.beginTransaction();
+		merge.accept(session, authors);
+		session.getTransaction().commit();
+		session.close();
+		return contents();
+	}
+
+	private List<Author> detachAll() {
+		Session session = getSession();
+		List<Author> authors = session.createQuery("from Author a order by a.name", Author.class).list();
+		for (Author author : authors) {
+			Hibernate.initialize(author.getBooks());
+			Hibernate.initialize(author.getAuthorAward());
+			author.getBooks().forEach(b -> Hibernate.initialize(b.getAuthors()));
+			author.getAuthorAward().forEach(a -> a.getAwardDescription());
+		}
+		session.close();
+		return new ArrayList<>(authors);
+	}
+
+	//everything but the ids, which differ between the two runs
+	private List<String> contents() {
+		Session session = getSession();
+		List<String> rows = new ArrayList<>();
+		for (Author author : session.createQuery("from Author", Author.class).list()) {
+			rows.add("author " + author.getName()
+					+ " books " + author.getBooks().stream().map(Book::getTitle).sorted().collect(Collectors.toList())
+					+ " awards " + author.getAuthorAward().stream().map(AuthorAward::getAwardDescription).sorted().collect(Collectors.toList()));
+		}
+		for (Book book : session.createQuery("from Book", Book.class).list()) {
+			rows.add("book " + book.getTitle()
+					+ " authors " + book.getAuthors().stream().map(Author::getName).sorted().collect(Collectors.toList()));
+		}
+		session.close();
+		rows.sort(null);
+		return rows;
+	}
+}
@@ -0,0 +1,193 @@
+package main;
+
+import static main.TestAuthors.author;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.TransactionRequiredException;
+
+import org.hibernate.Session;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import main.bulk.BulkMutationResult;
+import main.bulk.BulkMutator;
+import main.models.Author;
+import main.models.AuthorAward;
+import main.models.Book;
+
+public class BulkMutatorTest extends BaseTest {
+
+	@Autowired
+	private BulkMutator mutator;
+
+	@Test
+	public void renamedAuthorsAreNotStaleInTheSessionOrTheCache() {
+		long renamed = save(author("Old One").build());
+		save(author("Old Two").build());
+		save(author("Keep").build());
+		//in the second level cache
+		Session reader = getSession();
+		reader.get(Author.class, renamed);
+		reader.close();
+
+		Session session = getSession();
+		session.beginTransaction();
+		Author managed = session.get(Author.class, renamed);
+		BulkMutationResult result = mutator.update(session, Author.class,
+				(cb, a) -> cb.like(a.get("name"), "Old%"), Collections.singletonMap("name", "Renamed"));
+		//the session sees the new name before the commit
+		assertThat(managed.getName()).isEqualTo("Renamed");
+		assertThat(getAuthorsByName("Renamed", session)).hasSize(2);
+		session.getTransaction().commit();
+		session.close();
+
+		assertThat(result.getRows()).isEqualTo(2);
+		assertThat(result.getRefreshed()).isEqualTo(1);
+		//the ids, the update, the refresh
+		assertThat(result.getStatements()).isEqualTo(3);
+		reader = getSession();
+		assertThat(reader.get(Author.class, renamed).getName()).isEqualTo("Renamed");
+		assertThat(getAuthorsByName("Keep", reader)).hasSize(1);
+		reader.close();
+	}
+
+	@Test
+	public void pendingChangesAreFlushedFirst() {
+		long id = save(author("Pending").build());
+		Session session = getSession();
+		session.beginTransaction();
+		session.get(Author.class, id).setName("Old but unflushed");
+		mutator.update(session, Author.class, (cb, a) -> cb.like(a.get("name"), "Old%"), Collections.singletonMap("name", "Renamed"));
+		session.getTransaction().commit();
+		assertThat(getAuthorsByName("Renamed", session)).extracting(Author::getId).containsExactly(id);
+		session.close();
+	}
+
+	@Test
+	public void rewardUpdatesRecomputeTheTotals() {
+		long id = save(author("Rewarded").rewards(0L, 1L, 2L, 3L, 4L).build());
+		Session session = getSession();
+		session.beginTransaction();
+		BulkMutationResult result = mutator.update(session, AuthorAward.class,
+				(cb, aw) -> cb.equal(aw.get("author").get("id"), id), Collections.singletonMap("monetaryReward", 7L));
+		session.getTransaction().commit();
+		session.close();
+
+		assertThat(result.getRows()).isEqualTo(5);
+		assertThat(totals(id)).containsExactly(35L, 5L);
+	}
+
+	@Test
+	public void rewardUpdatesWriteAMissingTotal() {
+		long id = save(author("Unrecorded").rewards(1L, 2L).build());
+		Session session = getSession();
+		session.beginTransaction();
+		//as if the author came from before the table
+		session.createNativeQuery("delete from author_award_total").executeUpdate();
+		mutator.update(session, AuthorAward.class,
+				(cb, aw) -> cb.equal(aw.get("author").get("id"), id), Collections.singletonMap("monetaryReward", 5L));
+		session.getTransaction().commit();
+		session.close();
+
+		assertThat(totals(id)).containsExactly(10L, 2L);
+	}
+
+	@Test
+	public void deletedAwardsLeaveTheSessionWithTheirAuthor() {
+		long id = save(author("Decorated").rewards(0L, 1L, 2L, 3L).build());
+		Session session = getSession();
+		session.beginTransaction();
+		Author author = session.get(Author.class, id);
+		assertThat(author.getAuthorAward()).hasSize(4);
+		BulkMutationResult result = mutator.delete(session, AuthorAward.class, (cb, aw) -> cb.ge(aw.get("monetaryReward"), 2L));
+		assertThat(session.contains(author)).isFalse();
+		assertThat(session.get(Author.class, id).getAuthorAward()).extracting(AuthorAward::getMonetaryReward).containsOnly(0L, 1L);
+		session.getTransaction().commit();
+		session.close();
+
+		assertThat(result.getRows()).isEqualTo(2);
+		assertThat(totals(id)).containsExactly(1L, 2L);
+		session = getSession();
+		assertThat(session.get(Author.class, id).getAuthorAward()).hasSize(2);
+		session.close();
+	}
+
+	@Test
+	public void deletedBooksTakeTheirAuthorships() {
+		long id = save(author("Prolific").book("Keep me").book("Drop me").book("Drop me too").build());
+		//the collection in the second level cache
+		Session reader = getSession();
+		assertThat(reader.get(Author.class, id).getBooks()).hasSize(3);
+		reader.close();
+
+		Session session = getSession();
+		session.beginTransaction();
+		BulkMutationResult result = mutator.delete(session, Book.class, (cb, b) -> cb.like(b.get("title"), "Drop%"));
+		session.getTransaction().commit();
+		session.close();
+
+		assertThat(result.getRows()).isEqualTo(2);
+		reader = getSession();
+		assertThat(reader.get(Author.class, id).getBooks()).extracting(Book::getTitle).containsExactly("Keep me");
+		reader.close();
+	}
+
+	@Test
+	public void deletingAuthorsGoesThroughAuthorDeleter() {
+		long doomed = save(author("Doomed").rewards(0L, 1L, 2L).build());
+		long kept = save(author("Kept").rewards(0L).build());
+		Session session = getSession();
+		session.beginTransaction();
+		Author managed = session.get(Author.class, doomed);
+		BulkMutationResult result = mutator.delete(session, Author.class, (cb, a) -> cb.equal(a.get("name"), "Doomed"));
+		assertThat(session.contains(managed)).isFalse();
+		session.getTransaction().commit();
+		session.close();
+
+		assertThat(result.getRows()).isEqualTo(1);
+		assertThat(result.getDetached()).isEqualTo(1);
+		session = getSession();
+		assertThat(session.get(Author.class, doomed)).isNull();
+		assertThat(session.get(Author.class, kept)).isNotNull();
+		assertThat(session.createQuery("select count(aw) from AuthorAward aw", Long.class).getSingleResult()).isEqualTo(1);
+		session.close();
+	}
+
+	@Test
+	public void onlyBasicAttributesInATransaction() {
+		Session session = getSession();
+		assertThatThrownBy(() -> mutator.update(session, Author.class, (cb, a) -> cb.conjunction(),
+				Collections.singletonMap("name", "Anyone"))).isInstanceOf(TransactionRequiredException.class);
+		session.beginTransaction();
+		assertThatThrownBy(() -> mutator.update(session, AuthorAward.class, (cb, aw) -> cb.conjunction(),
+				Collections.singletonMap("author", null))).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> mutator.update(session, AuthorAward.class, (cb, aw) -> cb.conjunction(),
+				Collections.singletonMap("monetaryReward", "lots"))).isInstanceOf(IllegalArgumentException.class);
+		session.getTransaction().rollback();
+		session.close();
+	}
+
+	private long save(Author author) {
+		Session session = getSession();
+		session.beginTransaction();
+		long id = (Long) session.save(author);
+		session.getTransaction().commit();
+		session.close();
+		return id;
+	}
+
+	private List<Long> totals(long authorId) {
+		Session session = getSession();
+		Object[] row = (Object[]) session.createNativeQuery("select total_reward, award_count from author_award_total where author_id = :id")
+				.setParameter("id", authorId)
+				.getSingleResult();
+		session.close();
+		return Arrays.stream(row).map(value -> ((Number) value).longValue()).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,77 @@
+package main;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.Session;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import main.metrics.PoolMetrics;
+
+public class ConnectionPoolTest extends BaseTest {
+
+	private static final int UNITS_OF_WORK = 160;
+
+	@Autowired
+	private PoolMetrics poolMetrics;
+
+	//PoolMetrics' connection counts are up to a second old, the pool's own are not
+	@Autowired
+	private HikariDataSource dataSource;
+
+	private final AtomicInteger peakActive = new AtomicInteger();
+	private final AtomicInteger peakTotal = new AtomicInteger();
+
+	@Test
+	public void sixteenThreadsGetSixteenConnections() throws Exception {
+		runConcurrently(1);
+		int serialPeak = peakActive.getAndSet(0);
+		runConcurrently(16);
+
+		//the old built-in pool of 3 never had more than 3 in use, whatever the number of threads.
+		assertThat(peakActive.get()).isGreaterThanOrEqualTo(16).isGreaterThan(serialPeak);
+		assertThat(poolMetrics.getTimeouts()).isZero();
+		assertThat(poolMetrics.getAcquireMicros().getCount()).isGreaterThanOrEqualTo(2 * UNITS_OF_WORK);
+		assertThat(peakTotal.get()).isGreaterThanOrEqualTo(16);
+		assertThat(dataSource.getHikariPoolMXBean().getActiveConnections()).isZero();
+	}
+
+	private void runConcurrently(int threads) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		//every thread holds its connection until all of them have one, however fast the pool grows
+		CyclicBarrier allIn = new CyclicBarrier(threads);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < UNITS_OF_WORK; i++) {
+			futures.add(executor.submit(() -> shortTransaction(allIn)));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+	}
+
+	private Void shortTransaction(CyclicBarrier allIn) throws Exception {
+		Session session = getSession();
+		session.beginTransaction();
+		//stands in for a query that keeps the connection busy for a bit
+		session.createNativeQuery("select 1 from pg_sleep(0.01)").getSingleResult();
+		allIn.await(10, TimeUnit.SECONDS);
+		peakActive.accumulateAndGet(dataSource.getHikariPoolMXBean().getActiveConnections(), Math::max);
+		peakTotal.accumulateAndGet(dataSource.getHikariPoolMXBean().getTotalConnections(), Math::max);
+		session.getTransaction().commit();
+		session.close();
+		return null;
+	}
+
+}
@@ -0,0 +1,57 @@
+package main;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.hibernate.Session;
+import org.junit.Test;
+
+import main.metrics.StatementCounter;
+import main.models.Author;
+
+/**
+ * Flushing with lots of managed entities writes only what changed, with or without bytecode enhancement
+ * ({@code gradle test -PnoEnhance --tests main.DirtyCheckFlushTest}). What the flush costs either way is
+ * measured by FlushBenchmark.
+ */
+public class DirtyCheckFlushTest extends BaseTest {
+
+	private static final int MANAGED = 10000;
+	private static final int FLUSHES = 20;
+	private static final int CHANGED_PER_FLUSH = 10;
+
+	@Test
+	public void flushOnlyWritesWhatChanged() {
+		Session session = getSession();
+		session.beginTransaction();
+		for (int i = 0; i < MANAGED; i++) {
+			Author author = new Author();
+			author.setName("Managed " + i);
+			session.save(author);
+		}
+		session.getTransaction().commit();
+		session.close();
+
+		StatementCounter counter = new StatementCounter();
+		session = getSession(counter);
+		session.beginTransaction();
+		List<Author> authors = session.createQuery("from Author", Author.class).list();
+		assertThat(authors).hasSize(MANAGED);
+		counter.reset();
+
+		for (int flush = 0; flush < FLUSHES; flush++) {
+			for (int i = 0; i < CHANGED_PER_FLUSH; i++) {
+				authors.get(flush * CHANGED_PER_FLUSH + i).setName("Changed " + flush + "-" + i);
+			}
+			session.flush();
+		}
+		session.getTransaction().commit();
+		session.close();
+
+		//one update batch per flush, whichever way the dirty check is done
+		assertThat(counter.getBatches()).isEqualTo(FLUSHES);
+		assertThat(counter.getStatements()).isZero();
+	}
+
+}
@@ -0,0 +1,151 @@
+package main;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+import main.metrics.StatementCounter;
+import main.models.Author;
+import main.models.AuthorAward;
+import main.models.Book;
+
+public class EntityEqualityTest extends BaseTest {
+
+	@Test
+	public void puttingAnAuthorInASetDoesNotLoadItsCollections() {
+		long id = saveAuthorWithBookAndAward();
+		sessionFactory.getCache().evictAllRegions();
+
+		StatementCounter counter = new StatementCounter();
+		Session session = getSession(counter);
+		Author author = session.get(Author.class, id);
+		counter.reset();
+
+		Set<Author> authors = new HashSet<>();
+		authors.add(author);
+		assertThat(authors.contains(author)).isTrue();
+
+		//Used to hash both lazy sets, which meant two selects right here.
+		assertThat(counter.getRoundTrips()).isZero();
+		assertThat(Hibernate.isInitialized(author.getBooks())).isFalse();
+		assertThat(Hibernate.isInitialized(author.getAuthorAward())).isFalse();
+		session.close();
+	}
+
+	@Test
+	public void detachedAuthorsCanBeHashedAndCompared() {
+		long id = saveAuthorWithBookAndAward();
+		Session session = getSession();
+		Author detached = session.get(Author.class, id);
+		session.close();
+
+		//Used to throw a LazyInitializationException.
+		Set<Author> authors = Sets.newHashSet(detached);
+
+		Author sameRow = new Author();
+		sameRow.setId(id);
+		assertThat(authors.contains(sameRow)).isTrue();
+	}
+
+	@Test
+	public void setMembershipSurvivesPersistAndMerge() {
+		Author author = new Author();
+		author.setName("Set Sally");
+		Set<Author> authors = Sets.newHashSet(author);
+
+		Session session = getSession();
+		session.beginTransaction();
+		session.persist(author);
+		session.getTransaction().commit();
+		session.close();
+		//The id changed from 0, the hash didn't.
+		assertThat(authors.contains(author)).isTrue();
+
+		session = getSession();
+		session.beginTransaction();
+		Author merged = (Author) session.merge(author);
+		session.getTransaction().commit();
+		session.close();
+		assertThat(merged).isNotSameAs(author);
+		assertThat(authors.contains(merged)).isTrue();
+
+		//Two unsaved authors are never the same author, even with the same name.
+		Author one = new Author();
+		one.setName("Twin");
+		Author two = new Author();
+		two.setName("Twin");
+		assertThat(one).isNotEqualTo(two);
+	}
+
+	@Test
+	public void hashingNeverWalksTheGraph() {
+		Author author = new Author();
+		author.setId(42);
+		author.setBooks(new UntouchableSet<Book>());
+		author.setAuthorAward(new UntouchableSet<AuthorAward>());
+		int small = author.hashCode();
+
+		AuthorAward award = new AuthorAward();
+		award.setAuthor(author);
+		Set<AuthorAward> awards = Sets.newHashSet(award);
+		assertThat(awards.contains(award)).isTrue();
+
+		//However big the graph gets, hashing costs the same.
+		Author big = new Author();
+		big.setId(42);
+		Set<Book> books = new HashSet<>();
+		for (int i = 0; i < 1000; i++) {
+			books.add(new Book());
+		}
+		big.setBooks(books);
+		assertThat(big.hashCode()).isEqualTo(small);
+		assertThat(big).isEqualTo(author);
+	}
+
+	private long saveAuthorWithBookAndAward() {
+		Author author = new Author();
+		author.setName("Hashed Harriet");
+		Book book = new Book();
+		book.setTitle("Equals and You");
+		author.setBooks(Sets.newHashSet(book));
+		AuthorAward award = new AuthorAward();
+		award.setAwardDescription("Constant Hash Prize");
+		award.setAuthor(author);
+		author.setAuthorAward(Sets.newHashSet(award));
+		Session session = getSession();
+		session.beginTransaction();
+		long id = (Long) session.save(author);
+		session.getTransaction().commit();
+		session.close();
+		return id;
+	}
+
+	//stands in for a lazy collection nobody is allowed to touch
+	private static class UntouchableSet<T> extends HashSet<T> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public int hashCode() {
+			throw new AssertionError("hashed the collection");
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			throw new AssertionError("compared the collection");
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			throw new AssertionError("walked the collection");
+		}
+	}
+
+}
@@ -0,0 +1,67 @@
+package main;
+
+import static main.TestAuthors.author;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.hibernate.Session;
+import org.junit.Before;
+import org.junit.Test;
+
+import main.metrics.StatementCounter;
+import main.models.Author;
+import main.models.Book;
+
+public class FetchTuningTest extends BaseTest {
+
+	private static final int AUTHORS = 500;
+
+	@Before
+	public void setUpLibrary() {
+		Session session = getSession();
+		session.beginTransaction();
+		for (int i = 0; i < AUTHORS; i++) {
+			session.save(author("Author " + i).books(2).awards(2).build());
+		}
+		session.getTransaction().commit();
+		session.close();
+		//we want to see what the database has to do, not the cache.
+		sessionFactory.getCache().evictAllRegions();
+	}
+
+	@Test
+	public void listingAuthorsWithBooksAndAwardsIsAConstantNumberOfQueries() {
+		StatementCounter counter = new StatementCounter();
+		Session session = getSession(counter);
+		List<Author> authors = session.createQuery("from Author", Author.class).list();
+		int books = 0;
+		int awards = 0;
+		for (Author author : authors) {
+			books += author.getBooks().size();
+			awards += author.getAuthorAward().size();
+		}
+		session.close();
+
+		assertThat(authors).hasSize(AUTHORS);
+		assertThat(books).isEqualTo(2 * AUTHORS);
+		assertThat(awards).isEqualTo(2 * AUTHORS);
+		//one for the authors, one subselect for all the books, one for all the awards. Used to be 1 + 2N.
+		assertThat(counter.getRoundTrips()).isEqualTo(3);
+	}
+
+	@Test
+	public void bookAuthorsAreLoadedInBatches() {
+		StatementCounter counter = new StatementCounter();
+		Session session = getSession(counter);
+		List<Book> books = session.createQuery("from Book", Book.class).list();
+		for (Book book : books) {
+			assertThat(book.getAuthors()).hasSize(1);
+		}
+		session.close();
+
+		//one for the books, then one per 50 collections; the authors come back with the collections.
+		assertThat(counter.getRoundTrips()).isLessThanOrEqualTo(1 + 2 * AUTHORS / 50);
+	}
+
+}
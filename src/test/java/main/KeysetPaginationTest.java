@@ -0,0 +1,109 @@
+package main;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hibernate.Session;
+import org.hibernate.SessionBuilder;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import main.models.Author;
+import main.repository.AuthorKey;
+import main.repository.AuthorRepository;
+import main.repository.AuthorSummary;
+import main.session.ReadOnlySessionTemplate;
+
+public class KeysetPaginationTest extends BaseTest {
+
+	@Autowired
+	private AuthorRepository authors;
+
+	@Test
+	public void pagesOfACommonNameCoverEveryAuthorOnce() {
+		saveAuthors("Smith", 250);
+		saveAuthors("Jones", 10);
+
+		List<Long> seen = new ArrayList<>();
+		List<Author> page = authors.findByName("Smith", null, 40);
+		while (!page.isEmpty()) {
+			page.forEach(a -> seen.add(a.getId()));
+			page = authors.findByName("Smith", AuthorKey.of(page.get(page.size() - 1)), 40);
+		}
+		assertThat(seen).hasSize(250).doesNotHaveDuplicates().isSorted();
+	}
+
+	@Test
+	public void prefixSearchIgnoresCaseAndWildcards() {
+		saveAuthors("Smith", 30);
+		saveAuthors("SMITHERS", 30);
+		saveAuthors("smithson", 30);
+		saveAuthors("Asmith", 5);
+		saveAuthors("Smi%th", 5);
+
+		List<String> names = new ArrayList<>();
+		List<Author> page = authors.findByNamePrefix("smi", null, 7);
+		while (!page.isEmpty()) {
+			page.forEach(a -> names.add(a.getName()));
+			page = authors.findByNamePrefix("smi", AuthorKey.of(page.get(page.size() - 1)), 7);
+		}
+		assertThat(names).hasSize(95).doesNotContain("Asmith");
+
+		assertThat(authors.findByNamePrefix("Smi%", null, 100)).extracting(Author::getName).containsOnly("Smi%th");
+	}
+
+	@Test
+	public void keysetSummariesMatchOffsetSummaries() {
+		saveAuthors("Author", 30);
+		saveAuthors("Brown", 30);
+		saveAuthors("Clark", 30);
+
+		List<Long> byOffset = authors.findSummaries(0, 1000).stream().map(AuthorSummary::getId).collect(Collectors.toList());
+		List<Long> byKeyset = new ArrayList<>();
+		List<AuthorSummary> page = authors.findSummaries((AuthorKey) null, 25);
+		while (!page.isEmpty()) {
+			page.forEach(s -> byKeyset.add(s.getId()));
+			page = authors.findSummaries(AuthorKey.of(page.get(page.size() - 1)), 25);
+		}
+		assertThat(byKeyset).isEqualTo(byOffset);
+	}
+
+	@Test
+	public void aDeepPageIsOneIndexSeek() {
+		Session session = getSession();
+		session.beginTransaction();
+		session.createNativeQuery("insert into author (id, auth_name) "
+				+ "select nextval('author_seq'), 'Author ' || (g % 100) from generate_series(1, 20000) g").executeUpdate();
+		session.createNativeQuery("analyze author").executeUpdate();
+		session.getTransaction().commit();
+		session.close();
+		AuthorKey after = AuthorKey.of(authors.findSummaries(15000, 1).get(0));
+
+		SqlRecorder sql = new SqlRecorder();
+		AuthorRepository recorded = new AuthorRepository(new ReadOnlySessionTemplate(sessionFactory) {
+			@Override
+			protected SessionBuilder<?> sessionBuilder() {
+				return super.sessionBuilder().statementInspector(sql);
+			}
+		});
+		assertThat(recorded.findSummaries(after, 20)).hasSize(20);
+
+		String plan = String.join("\n", explain(sql.getStatements().get(0), after.getName(), after.getId(), 20));
+		assertThat(plan).contains("Index Cond").contains("author_name_idx").doesNotContain("Sort");
+	}
+
+	private void saveAuthors(String name, int count) {
+		Session session = getSession();
+		session.beginTransaction();
+		for (int i = 0; i < count; i++) {
+			Author author = new Author();
+			author.setName(name);
+			session.save(author);
+		}
+		session.getTransaction().commit();
+		session.close();
+	}
+}
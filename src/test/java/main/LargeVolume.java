@@ -0,0 +1,9 @@
+package main;
+
+/**
+ * JUnit category for the tests that push a million rows through the database to show something stays
+ * within the test heap. They take minutes, so {@code gradle test} leaves them out and
+ * {@code gradle largeTest} runs only them.
+ */
+public interface LargeVolume {
+}
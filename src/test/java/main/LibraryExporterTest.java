@@ -0,0 +1,107 @@
+package main;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.hibernate.Session;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.google.common.collect.Sets;
+
+import main.export.LibraryExporter;
+import main.models.Author;
+import main.models.AuthorAward;
+import main.models.Book;
+
+public class LibraryExporterTest extends BaseTest {
+
+	@Autowired
+	private LibraryExporter exporter;
+
+	@Test
+	public void writesOneLinePerAuthor() throws Exception {
+		Author author = new Author();
+		author.setName("Quote \"Unquote\"");
+		Book book = new Book();
+		book.setTitle("Exported");
+		author.setBooks(Sets.newHashSet(book));
+		AuthorAward award = new AuthorAward();
+		award.setAwardDescription("Line\nBreak");
+		award.setAuthor(author);
+		author.setAuthorAward(Sets.newHashSet(award));
+		Author lonely = new Author();
+		lonely.setName("No Books");
+
+		Session session = getSession();
+		session.beginTransaction();
+		session.save(author);
+		session.save(lonely);
+		session.getTransaction().commit();
+		session.close();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		assertThat(exporter.export(Channels.newChannel(bytes))).isEqualTo(2);
+
+		String[] lines = new String(bytes.toByteArray(), StandardCharsets.UTF_8).split("\n");
+		assertThat(lines).containsExactly(
+				"{\"id\":" + author.getId() + ",\"name\":\"Quote \\\"Unquote\\\"\",\"bookIds\":[" + book.getId()
+						+ "],\"awards\":[{\"id\":" + award.getId() + ",\"description\":\"Line\\nBreak\"}]}",
+				"{\"id\":" + lonely.getId() + ",\"name\":\"No Books\",\"bookIds\":[],\"awards\":[]}");
+	}
+
+	@Test
+	@Category(LargeVolume.class)
+	public void exportsAMillionAuthorsInASmallHeap() throws Exception {
+		//the test jvm gets 256m (build.gradle); a million managed Authors would not fit.
+		Session session = getSession();
+		session.beginTransaction();
+		session.createNativeQuery("insert into author (id, auth_name) "
+				+ "select nextval('author_seq'), 'Author ' || g from generate_series(1, 1000000) g").executeUpdate();
+		session.getTransaction().commit();
+		session.close();
+
+		CountingChannel channel = new CountingChannel();
+		long heapBefore = usedHeap();
+		assertThat(exporter.export(channel)).isEqualTo(1000000);
+		assertThat(channel.lines).isEqualTo(1000000);
+		//nothing of the million stays behind
+		assertThat(usedHeap() - heapBefore).isLessThan(32L * 1024 * 1024);
+	}
+
+	private static long usedHeap() {
+		System.gc();
+		return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+	}
+
+	private static class CountingChannel implements WritableByteChannel {
+		long lines;
+
+		@Override
+		public int write(ByteBuffer src) {
+			int n = src.remaining();
+			while (src.hasRemaining()) {
+				if (src.get() == '\n') {
+					lines++;
+				}
+			}
+			return n;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package main;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hibernate.Session;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import main.models.Author;
+import main.models.AuthorAward;
+import main.models.Book;
+import main.search.LibrarySearch;
+import main.search.SearchHit;
+
+public class LibrarySearchTest extends BaseTest {
+
+	@Autowired
+	private LibrarySearch search;
+
+	private long hobbitHolesId;
+
+	@Before
+	public void setUpCatalog() {
+		Author author = new Author();
+		author.setName("Searchable");
+		String[] titles = { "The Hobbit", "Hobbit Holes and Hobbit Homes", "Dune", "Dune Messiah", "Children of Dune" };
+		Book hobbitHoles = null;
+		for (String title : titles) {
+			Book book = new Book();
+			book.setTitle(title);
+			author.addBook(book);
+			if (title.startsWith("Hobbit Holes")) {
+				hobbitHoles = book;
+			}
+		}
+		AuthorAward award = new AuthorAward();
+		award.setAwardDescription("Hugo Award for Best Novel");
+		award.setAuthor(author);
+		author.setAuthorAward(new HashSet<>());
+		author.getAuthorAward().add(award);
+
+		Session session = getSession();
+		session.beginTransaction();
+		session.save(author);
+		session.getTransaction().commit();
+		session.close();
+		hobbitHolesId = hobbitHoles.getId();
+	}
+
+	@Test
+	public void prefixesRankedAndPaged() {
+		List<SearchHit> hits = search.searchBooks("hob", 0, 10);
+		assertThat(hits).extracting(SearchHit::getText).containsExactly("Hobbit Holes and Hobbit Homes", "The Hobbit");
+		assertThat(hits.get(0).getRank()).isGreaterThan(hits.get(1).getRank());
+
+		assertThat(search.searchBooks("hob hol", 0, 10)).extracting(SearchHit::getId).containsExactly(hobbitHolesId);
+		assertThat(search.searchBooks("dune", 0, 2)).hasSize(2);
+		assertThat(search.searchBooks("dune", 2, 2)).hasSize(1);
+		assertThat(search.searchAwards("best nov", 0, 10)).extracting(SearchHit::getText).containsExactly("Hugo Award for Best Novel");
+		//punctuation is just a separator
+		assertThat(search.searchBooks("'dune' & | !", 0, 10)).hasSize(3);
+		assertThat(search.searchBooks("  ", 0, 10)).isEmpty();
+	}
+
+	@Test
+	public void updatesAreSearchableAtOnce() {
+		Session session = getSession();
+		session.beginTransaction();
+		session.get(Book.class, hobbitHolesId).setTitle("Smials of the Shire");
+		session.getTransaction().commit();
+		session.close();
+
+		assertThat(search.searchBooks("smia", 0, 10)).extracting(SearchHit::getId).containsExactly(hobbitHolesId);
+		assertThat(search.searchBooks("hob", 0, 10)).hasSize(1);
+	}
+
+	@Test
+	public void queriesUseTheIndexAndSurviveARebuild() {
+		search.rebuildIndexes();
+		assertThat(search.searchBooks("dune", 0, 10)).hasSize(3);
+
+		Session session = getSession();
+		//swapped in, and the old one dropped
+		assertThat(session.createNativeQuery("select indexname from pg_indexes where indexname like 'book_title_fts%'").list())
+				.containsExactly("book_title_fts");
+		session.beginTransaction();
+		//the table is tiny, so take the sequential scan off the table
+		session.createNativeQuery("set local enable_seqscan = off").executeUpdate();
+		@SuppressWarnings("unchecked")
+		List<String> plan = session.createNativeQuery("explain select id from book, to_tsquery('simple', 'dune:*') q "
+				+ "where to_tsvector('simple', coalesce(title, '')) @@ q").list();
+		session.getTransaction().commit();
+		session.close();
+		assertThat(plan.stream().collect(Collectors.joining("\n"))).contains("book_title_fts");
+	}
+}
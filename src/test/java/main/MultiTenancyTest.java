@@ -0,0 +1,270 @@
+package main;
+
+import static main.TestAuthors.author;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hibernate.Session;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import main.models.Author;
+import main.repository.AsyncLibraryRepository;
+import main.repository.AuthorEarnings;
+import main.repository.AuthorRepository;
+import main.search.LibrarySearch;
+import main.tenancy.TenantConnectionProvider;
+import main.tenancy.Tenants;
+
+public class MultiTenancyTest extends BaseTest {
+
+	private static final int TENANTS = 50;
+	private static boolean schemasCreated;
+
+	@Autowired
+	private HikariDataSource primary;
+
+	@Autowired
+	private TenantConnectionProvider tenantConnections;
+
+	@Autowired
+	private AuthorRepository authors;
+
+	@Autowired
+	private AsyncLibraryRepository asyncLibrary;
+
+	@Autowired
+	private LibrarySearch search;
+
+	@Before
+	public void createTenantSchemas() throws SQLException {
+		//on a connection of its own, the pool's ones must keep the default search_path
+		try (Connection connection = DriverManager.getConnection(primary.getJdbcUrl(), primary.getUsername(), primary.getPassword());
+				Statement statement = connection.createStatement()) {
+			for (int i = 0; i < TENANTS; i++) {
+				if (schemasCreated) {
+					statement.execute("truncate " + tenant(i) + ".book_authorship, " + tenant(i) + ".author_award, "
+							+ tenant(i) + ".author_award_total, " + tenant(i) + ".author, " + tenant(i) + ".book");
+					continue;
+				}
+				statement.execute("drop schema if exists " + tenant(i) + " cascade");
+				statement.execute("create schema " + tenant(i));
+				statement.execute("set search_path to " + tenant(i));
+				TestDatabase.buildTables(connection);
+			}
+		}
+		schemasCreated = true;
+		sessionFactory.getCache().evictAllRegions();
+	}
+
+	@Test
+	public void everyTenantOnlySeesItsOwnCatalog() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(TENANTS);
+		List<Future<List<Long>>> saved = new ArrayList<>();
+		for (int i = 0; i < TENANTS; i++) {
+			String tenant = tenant(i);
+			long reward = i + 1;
+			saved.add(executor.submit(() -> Tenants.in(tenant, () -> saveAuthors(tenant, reward))));
+		}
+		List<List<Long>> ids = new ArrayList<>();
+		for (Future<List<Long>> future : saved) {
+			ids.add(future.get());
+		}
+
+		List<Future<?>> checks = new ArrayList<>();
+		for (int i = 0; i < TENANTS; i++) {
+			String tenant = tenant(i);
+			List<Long> own = ids.get(i);
+			long reward = i + 1;
+			checks.add(executor.submit(() -> Tenants.in(tenant, () -> {
+				Session session = getSession();
+				//the schemas have sequences of their own, so the ids are the same in every tenant:
+				//this also checks that the second level cache keeps the tenants apart
+				for (Long id : own) {
+					assertThat(session.get(Author.class, id).getName()).startsWith(tenant + " ");
+				}
+				assertThat(session.createQuery("select a.name from Author a", String.class).list())
+						.hasSize(own.size())
+						.allMatch(name -> name.startsWith(tenant + " "));
+				session.close();
+				List<AuthorEarnings> top = authors.findTopEarners(3);
+				assertThat(top).extracting(AuthorEarnings::getTotalReward).containsOnly(reward * 2);
+				assertThat(top).extracting(AuthorEarnings::getName).allMatch(name -> name.startsWith(tenant + " "));
+				return null;
+			})));
+		}
+		for (Future<?> check : checks) {
+			check.get();
+		}
+		executor.shutdown();
+		assertThat(ids.get(0)).isEqualTo(ids.get(TENANTS - 1));
+
+		//nothing went to the default schema
+		Session session = getSession();
+		assertThat(session.createQuery("select count(a) from Author a", Long.class).getSingleResult()).isZero();
+		session.close();
+	}
+
+	@Test
+	public void aBusyTenantDoesNotStarveTheOthers() throws Exception {
+		String busy = tenant(0);
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicInteger mostBusyConnections = new AtomicInteger();
+		Map<String, LongAdder> queries = new ConcurrentHashMap<>();
+		List<Future<?>> workers = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(40 + TENANTS - 1);
+
+		//40 threads holding a connection for 200ms at a time, on a pool of 20
+		for (int t = 0; t < 40; t++) {
+			workers.add(executor.submit(() -> Tenants.in(busy, () -> {
+				while (running.get()) {
+					Session session = getSession();
+					session.beginTransaction();
+					session.createNativeQuery("select 1 from pg_sleep(0.2)").getSingleResult();
+					mostBusyConnections.accumulateAndGet(tenantConnections.getActiveConnections(busy), Math::max);
+					session.getTransaction().commit();
+					session.close();
+					queries.computeIfAbsent(busy, b -> new LongAdder()).increment();
+				}
+				return null;
+			})));
+		}
+		//one thread for every other tenant, short queries
+		for (int i = 1; i < TENANTS; i++) {
+			String tenant = tenant(i);
+			queries.put(tenant, new LongAdder());
+			workers.add(executor.submit(() -> Tenants.in(tenant, () -> {
+				while (running.get()) {
+					Session session = getSession();
+					session.beginTransaction();
+					session.createQuery("select count(a) from Author a", Long.class).getSingleResult();
+					session.getTransaction().commit();
+					session.close();
+					queries.get(tenant).increment();
+				}
+				return null;
+			})));
+		}
+		TimeUnit.SECONDS.sleep(3);
+		running.set(false);
+		//a timeout or a failed query in any of them fails the test
+		for (Future<?> worker : workers) {
+			worker.get();
+		}
+		executor.shutdown();
+
+		long quietMin = Long.MAX_VALUE;
+		long quietTotal = 0;
+		for (int i = 1; i < TENANTS; i++) {
+			long count = queries.get(tenant(i)).sum();
+			quietMin = Math.min(quietMin, count);
+			quietTotal += count;
+		}
+		long quietMean = quietTotal / (TENANTS - 1);
+
+		assertThat(mostBusyConnections.get()).isLessThanOrEqualTo(tenantConnections.getMaxConnections());
+		assertThat(quietMin).isGreaterThan(0).isGreaterThanOrEqualTo(quietMean / 4);
+	}
+
+	@Test
+	public void aBusyTenantsBacklogDoesNotHoldUpTheOthersAsyncCalls() throws Exception {
+		//100 calls of 200ms each, 4 at a time: 5 seconds of work for the busy tenant
+		List<CompletableFuture<Object>> backlog = Tenants.in(tenant(0), () -> {
+			List<CompletableFuture<Object>> calls = new ArrayList<>();
+			for (int i = 0; i < 100; i++) {
+				calls.add(asyncLibrary.submit(30000, s -> s.createNativeQuery("select 1 from pg_sleep(0.2)").getSingleResult()));
+			}
+			return calls;
+		});
+		//behind that backlog on the executor, this would miss its deadline by seconds
+		CompletableFuture<Long> quiet = Tenants.in(tenant(1), () -> asyncLibrary.submit(2500,
+				s -> s.createQuery("select count(a) from Author a", Long.class).getSingleResult()));
+
+		assertThat(quiet.get()).isZero();
+		assertThat(backlog.get(backlog.size() - 1).isDone()).isFalse();
+		CompletableFuture.allOf(backlog.toArray(new CompletableFuture[0])).get();
+	}
+
+	@Test
+	public void theDefaultTenantCanBeCappedToo() throws Exception {
+		//out of the box public has the whole pool
+		assertThat(tenantConnections.getMaxConnections(Tenants.DEFAULT)).isEqualTo(primary.getMaximumPoolSize());
+
+		TenantConnectionProvider provider = new TenantConnectionProvider(primary, 4, 2, 200);
+		Connection first = provider.getConnection(Tenants.DEFAULT);
+		Connection second = provider.getConnection(Tenants.DEFAULT);
+		try {
+			provider.getConnection(Tenants.DEFAULT);
+			fail();
+		} catch (SQLTransientConnectionException e) {
+			//both permits taken
+		}
+		assertThat(provider.getActiveConnections(Tenants.DEFAULT)).isEqualTo(2);
+		provider.releaseConnection(Tenants.DEFAULT, first);
+		provider.releaseConnection(Tenants.DEFAULT, provider.getConnection(Tenants.DEFAULT));
+		provider.releaseConnection(Tenants.DEFAULT, second);
+		assertThat(provider.getActiveConnections(Tenants.DEFAULT)).isZero();
+	}
+
+	@Test
+	public void searchIndexesAreRebuiltForTheCurrentTenant() {
+		long publicIndex = indexOid(Tenants.DEFAULT);
+		long otherIndex = indexOid(tenant(2));
+		long rebuiltIndex = indexOid(tenant(1));
+
+		Tenants.in(tenant(1), () -> {
+			search.rebuildIndexes();
+			return null;
+		});
+
+		assertThat(indexOid(tenant(1))).isNotEqualTo(rebuiltIndex);
+		assertThat(indexOid(tenant(2))).isEqualTo(otherIndex);
+		assertThat(indexOid(Tenants.DEFAULT)).isEqualTo(publicIndex);
+	}
+
+	private long indexOid(String schema) {
+		Session session = getSession();
+		Number oid = (Number) session.createNativeQuery("select cast(cast(:index as regclass) as oid)")
+				.setParameter("index", schema + ".book_title_fts")
+				.getSingleResult();
+		session.close();
+		return oid.longValue();
+	}
+
+	private List<Long> saveAuthors(String tenant, long reward) {
+		Session session = getSession();
+		session.beginTransaction();
+		List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			ids.add((Long) session.save(author(tenant + " author " + i).rewards(reward, reward).build()));
+		}
+		session.getTransaction().commit();
+		session.close();
+		return ids;
+	}
+
+	private static String tenant(int i) {
+		return "tenant_" + i;
+	}
+}
@@ -0,0 +1,92 @@
+package main;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import main.models.Author;
+import main.session.ReadOnlySessionTemplate;
+
+public class ReadOnlySessionTest extends BaseTest {
+
+	@Autowired
+	private ReadOnlySessionTemplate readOnly;
+
+	@Test
+	public void loadedEntitiesAreReadOnlyAndChangesGoNowhere() {
+		Author author = new Author();
+		author.setName("Read Only Rita");
+		Session session = getSession();
+		session.beginTransaction();
+		session.save(author);
+		session.getTransaction().commit();
+		session.close();
+
+		readOnly.execute(s -> {
+			Author loaded = getAuthorsByName("Read Only Rita", s).get(0);
+			assertThat(s.isReadOnly(loaded)).isTrue();
+			loaded.setName("Scribbled On");
+			//a normal session would auto-flush the new name before this query and find it
+			assertThat(getAuthorsByName("Scribbled On", s)).isEmpty();
+			return null;
+		});
+
+		session = getSession();
+		assertThat(getAuthorsByName("Read Only Rita", session)).hasSize(1);
+		session.close();
+	}
+
+	@Test
+	public void theDatabaseRefusesWrites() {
+		Boolean readOnlyTransaction = readOnly.execute(s -> "on".equals(
+				s.createNativeQuery("show transaction_read_only").getSingleResult()));
+		assertThat(readOnlyTransaction).isTrue();
+
+		//and the connection went back to the pool writable again
+		Session session = getSession();
+		session.beginTransaction();
+		assertThat(session.createNativeQuery("show transaction_read_only").getSingleResult()).isEqualTo("off");
+		session.getTransaction().commit();
+		session.close();
+	}
+
+	@Test
+	public void readOnlySessionsHoldLessPerEntity() {
+		Session session = getSession();
+		session.beginTransaction();
+		session.createNativeQuery("insert into author (id, auth_name) "
+				+ "select nextval('author_seq'), 'Author ' || g from generate_series(1, 50000) g").executeUpdate();
+		session.getTransaction().commit();
+		session.close();
+
+		//warm up both paths once so class loading and query plans don't count
+		loadAll(getSession());
+		loadAll(readOnly.openSession());
+
+		//no snapshot of the loaded state is kept for read-only entities
+		assertThat(loadAll(readOnly.openSession())).isLessThan(loadAll(getSession()));
+	}
+
+	//returns the bytes the session retains per loaded entity, without what the second-level cache keeps
+	private long loadAll(Session session) {
+		session.setCacheMode(CacheMode.IGNORE);
+		long before = usedHeap();
+		session.beginTransaction();
+		List<Author> authors = session.createQuery("from Author", Author.class).list();
+		long retained = usedHeap() - before;
+		session.getTransaction().commit();
+		session.close();
+		return retained / authors.size();
+	}
+
+	private static long usedHeap() {
+		System.gc();
+		return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+	}
+
+}
@@ -0,0 +1,167 @@
+package main;
+
+import static main.TestAuthors.author;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
+
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import main.bulk.BulkMutator;
+import main.models.Author;
+import main.routing.ReadRouting;
+import main.routing.RoutingDataSource;
+import main.routing.RoutingDataSource.Balance;
+import main.routing.WriteTracker;
+
+public class RoutingTest extends BaseTest {
+
+	private static final String REPLICA_URL = "jdbc:postgresql://localhost:5433/library";
+
+	@Autowired
+	private HikariDataSource primary;
+
+	@Autowired
+	private BulkMutator mutator;
+
+	private RoutingDataSource routing;
+
+	@After
+	public void closeReplicas() {
+		if (routing != null) {
+			routing.close();
+		}
+	}
+
+	@Test
+	public void readsGoToTheReplicaAndWritesStayOnThePrimary() throws Exception {
+		Assume.assumeTrue("no database on port 5433", replicaIsUp());
+		routing = new RoutingDataSource(primary, Arrays.asList(pool(REPLICA_URL)), Balance.ROUND_ROBIN, 0);
+
+		assertThat(serverPort(routing)).isEqualTo(serverPort(primary));
+		assertThat(ReadRouting.readOnly(() -> serverPort(routing))).isEqualTo(5433);
+	}
+
+	@Test
+	public void aThreadReadsItsOwnWritesFromThePrimary() throws Exception {
+		List<DataSource> targets = targetsAround(session -> session.save(author("Fresh Write").build()));
+
+		assertThat(targets.get(0)).isNotSameAs(primary);
+		assertThat(targets.get(1)).isSameAs(primary);
+		//other threads haven't written anything
+		assertThat(targets.get(2)).isNotSameAs(primary);
+	}
+
+	@Test
+	public void bulkWritesKeepTheThreadOnThePrimaryToo() throws Exception {
+		Session session = getSession();
+		session.beginTransaction();
+		long id = (Long) session.save(author("Bulk Write").build());
+		session.getTransaction().commit();
+		session.close();
+
+		//no entity events, only the bulk statements
+		List<DataSource> targets = targetsAround(s -> mutator.update(s, Author.class,
+				(cb, a) -> cb.equal(a.get("id"), id), Collections.singletonMap("name", "Bulk Rewrite")));
+
+		assertThat(targets.get(0)).isNotSameAs(primary);
+		assertThat(targets.get(1)).isSameAs(primary);
+		assertThat(targets.get(2)).isNotSameAs(primary);
+	}
+
+	@Test
+	public void aSessionClosedWithoutCommittingIsForgotten() {
+		Session session = getSession();
+		session.beginTransaction();
+		session.save(author("Never Committed").build());
+		session.flush();
+		assertThat(WriteTracker.isWriting(session)).isTrue();
+		session.close();
+
+		assertThat(WriteTracker.isWriting(session)).isFalse();
+	}
+
+	@Test
+	public void replicasAreBalanced() throws Exception {
+		List<HikariDataSource> replicas = Arrays.asList(pool(primary.getJdbcUrl()), pool(primary.getJdbcUrl()));
+		routing = new RoutingDataSource(primary, replicas, Balance.ROUND_ROBIN, 0);
+		assertThat(ReadRouting.readOnly(routing::target)).isSameAs(replicas.get(0));
+		assertThat(ReadRouting.readOnly(routing::target)).isSameAs(replicas.get(1));
+		assertThat(ReadRouting.readOnly(routing::target)).isSameAs(replicas.get(0));
+		routing.close();
+
+		replicas = Arrays.asList(pool(primary.getJdbcUrl()), pool(primary.getJdbcUrl()));
+		routing = new RoutingDataSource(primary, replicas, Balance.LEAST_CONNECTIONS, 0);
+		try (Connection busy = replicas.get(0).getConnection()) {
+			assertThat(ReadRouting.readOnly(routing::target)).isSameAs(replicas.get(1));
+		}
+	}
+
+	//where reads go before and after a thread of its own commits the write, then on another thread: this one
+	//may have written something in an earlier test
+	private List<DataSource> targetsAround(Consumer<Session> write) throws InterruptedException {
+		routing = new RoutingDataSource(primary, Arrays.asList(pool(primary.getJdbcUrl())), Balance.ROUND_ROBIN, 60000);
+		List<DataSource> targets = new ArrayList<>();
+		Thread writer = new Thread(() -> {
+			targets.add(ReadRouting.readOnly(routing::target));
+			Session session = getSession();
+			session.beginTransaction();
+			write.accept(session);
+			session.getTransaction().commit();
+			session.close();
+			targets.add(ReadRouting.readOnly(routing::target));
+		});
+		writer.start();
+		writer.join();
+		Thread other = new Thread(() -> targets.add(ReadRouting.readOnly(routing::target)));
+		other.start();
+		other.join();
+		return targets;
+	}
+
+	private HikariDataSource pool(String url) {
+		HikariConfig config = new HikariConfig();
+		config.setJdbcUrl(url);
+		config.setUsername(primary.getUsername());
+		config.setPassword(primary.getPassword());
+		config.setMaximumPoolSize(2);
+		return new HikariDataSource(config);
+	}
+
+	private static int serverPort(DataSource dataSource) {
+		try (Connection connection = dataSource.getConnection();
+				Statement statement = connection.createStatement();
+				ResultSet port = statement.executeQuery("select inet_server_port()")) {
+			port.next();
+			return port.getInt(1);
+		} catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private boolean replicaIsUp() {
+		try (Connection connection = DriverManager.getConnection(REPLICA_URL, primary.getUsername(), primary.getPassword())) {
+			return true;
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+}
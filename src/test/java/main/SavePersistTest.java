@@ -44,10 +44,10 @@ public class SavePersistTest extends BaseTest {
 	}
 	
 	@Test
-	public void savesOccurOutsideTransactionButPersistsDoNot() {
+	public void savesAndPersistsOutsideATransactionWaitForAFlush() {
 		Session session = sessionFactory.openSession();
 		
-		//save
+		//save (with sequence ids the id is handed out here, the insert itself waits for a flush)
 		Author authorSaved = new Author();
 		authorSaved.setName("AlexSaved");
 		Long id = (Long) session.save(authorSaved);
@@ -55,7 +55,13 @@ public class SavePersistTest extends BaseTest {
 		session.close();
 		assertThat(savedVal.getName()).isEqualTo("AlexSaved");
 		
-		//persist
+		//the session closed without a flush, so the insert never happened
+		session = getSession();
+		assertThat(session.get(Author.class, id)).isNull();
+		assertThat(getAuthorsByName("AlexSaved", session)).isEmpty();
+		session.close();
+		
+		//persist, it only shows up once a transaction flushes it
 		session = sessionFactory.openSession();
 		Author authorPersisted = new Author();
 		authorPersisted.setName("AlexPersisted");
@@ -73,6 +79,10 @@ public class SavePersistTest extends BaseTest {
 		assertThat(authors.get(0).getName()).isEqualTo("AlexPersisted");
 		tx.commit();
 		session.close();
+		
+		session = getSession();
+		assertThat(getAuthorsByName("AlexPersisted", session)).hasSize(1);
+		session.close();
 	}
 	
 	@Test
@@ -82,6 +92,7 @@ public class SavePersistTest extends BaseTest {
 		Session session = getSession();
 		Transaction tx = session.beginTransaction();
 		Long id = (Long) session.save(alex);
+		session.flush();//sequence ids mean save no longer inserts right away, and evicting a pending insert blows up at flush.
 		session.evict(alex);// only affects cache.
 		tx.commit();
 		tx.begin();
@@ -0,0 +1,129 @@
+package main;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.hibernate.Session;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+import main.metrics.StatementCounter;
+import main.models.Author;
+import main.models.AuthorAward;
+import main.models.Book;
+
+public class SecondLevelCacheTest extends BaseTest {
+	
+	private long authorId;
+	
+	@Before
+	public void setUpAuthor() {
+		sessionFactory.getCache().evictAllRegions();
+		sessionFactory.getStatistics().clear();
+		
+		Author author = new Author();
+		author.setName("Cached Carl");
+		Book book = new Book();
+		book.setTitle("Rarely Changes");
+		author.setBooks(Sets.newHashSet(book));
+		AuthorAward award = new AuthorAward();
+		award.setAwardDescription("Best Cached");
+		award.setAuthor(author);
+		author.setAuthorAward(Sets.newHashSet(award));
+		
+		Session session = getSession();
+		session.beginTransaction();
+		authorId = (Long) session.save(author);
+		session.getTransaction().commit();
+		session.close();
+	}
+	
+	@Test
+	public void secondSessionGetsEntitiesAndCollectionsWithoutSql() {
+		//first session warms the collection regions up
+		Session session = getSession();
+		Author author = session.get(Author.class, authorId);
+		assertThat(author.getBooks()).hasSize(1);
+		assertThat(author.getAuthorAward()).hasSize(1);
+		session.close();
+		
+		StatementCounter counter = new StatementCounter();
+		session = getSession(counter);
+		author = session.get(Author.class, authorId);
+		assertThat(author.getBooks().iterator().next().getTitle()).isEqualTo("Rarely Changes");
+		assertThat(author.getAuthorAward().iterator().next().getAwardDescription()).isEqualTo("Best Cached");
+		session.close();
+		
+		assertThat(counter.getRoundTrips()).isZero();
+		assertThat(regionStatistics("main.models.Author").getHitCount()).isGreaterThanOrEqualTo(1);
+		assertThat(regionStatistics("main.models.Author.books").getHitCount()).isEqualTo(1);
+		assertThat(regionStatistics("main.models.Author.books").getMissCount()).isEqualTo(1);
+	}
+	
+	@Test
+	public void mergeInvalidatesTheEntityAndTheNameQuery() {
+		Session session = getSession();
+		assertThat(getAuthorsByName("Cached Carl", session)).hasSize(1);
+		session.close();
+		
+		//same query again is answered by the query cache
+		StatementCounter counter = new StatementCounter();
+		session = getSession(counter);
+		assertThat(getAuthorsByName("Cached Carl", session)).hasSize(1);
+		session.close();
+		assertThat(counter.getRoundTrips()).isZero();
+		
+		//now change it through a detached copy
+		Author detached = new Author();
+		detached.setId(authorId);
+		detached.setName("Renamed Carl");
+		session = getSession();
+		session.beginTransaction();
+		session.merge(detached);
+		session.getTransaction().commit();
+		session.close();
+		
+		//nobody gets to see the old name any more
+		session = getSession();
+		assertThat(getAuthorsByName("Cached Carl", session)).isEmpty();
+		assertThat(getAuthorsByName("Renamed Carl", session)).hasSize(1);
+		assertThat(session.get(Author.class, authorId).getName()).isEqualTo("Renamed Carl");
+		session.close();
+	}
+	
+	@Test
+	public void updateAndSaveOrUpdateInvalidateTheEntity() {
+		Session session = getSession();
+		Author author = session.get(Author.class, authorId);
+		session.close();
+		
+		author.setName("Updated Carl");
+		session = getSession();
+		session.beginTransaction();
+		session.update(author);
+		session.getTransaction().commit();
+		session.close();
+		
+		session = getSession();
+		assertThat(session.get(Author.class, authorId).getName()).isEqualTo("Updated Carl");
+		session.close();
+		
+		author.setName("SaveOrUpdated Carl");
+		session = getSession();
+		session.beginTransaction();
+		session.saveOrUpdate(author);
+		session.getTransaction().commit();
+		session.close();
+		
+		session = getSession();
+		assertThat(session.get(Author.class, authorId).getName()).isEqualTo("SaveOrUpdated Carl");
+		session.close();
+	}
+	
+	private CacheRegionStatistics regionStatistics(String region) {
+		return sessionFactory.getStatistics().getDomainDataRegionStatistics(region);
+	}
+
+}
@@ -0,0 +1,46 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Remembers every statement a session prepares. A jdbc batch is prepared once, so it shows up once.
+ */
+public class SqlRecorder implements StatementInspector {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<String> statements = new ArrayList<>();
+
+	@Override
+	public String inspect(String sql) {
+		statements.add(sql.toLowerCase(Locale.ROOT));
+		return sql;
+	}
+
+	/**
+	 * Statements starting with the verb that name the table, as a whole word: author is not author_award.
+	 */
+	public int count(String verb, String table) {
+		Pattern name = Pattern.compile("\\b" + Pattern.quote(table) + "\\b");
+		int count = 0;
+		for (String sql : statements) {
+			if (sql.startsWith(verb) && name.matcher(sql).find()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public List<String> getStatements() {
+		return statements;
+	}
+
+	public void clear() {
+		statements.clear();
+	}
+}
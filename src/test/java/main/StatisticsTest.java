@@ -0,0 +1,87 @@
+package main;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.google.common.collect.Sets;
+
+import main.metrics.LibraryStatistics;
+import main.models.Author;
+import main.models.Book;
+
+public class StatisticsTest extends BaseTest {
+	
+	private static final String FILTERED_FETCH = "from Author as a join fetch a.books b where b.title = 'Storm of Swords'";
+	private static final String FULL_FETCH = "from Author as a join fetch a.books b";
+	
+	@Autowired
+	private LibraryStatistics libraryStatistics;
+	
+	@Before
+	public void resetStatistics() {
+		libraryStatistics.clear();
+	}
+	
+	@Test
+	public void countsTheJoinFetchScenario() throws Exception {
+		//same workload as MergeUpdateTest.iWasToldJoinFetchedEntityAsFilterIsBadButIdontSeeThatHere
+		Author a1 = new Author();
+		a1.setName("Mr. Tickles");
+		Book b1 = new Book();
+		b1.setTitle("Storm of Swords");
+		Book b2 = new Book();
+		b2.setTitle("The Shrimp");
+		a1.setBooks(Sets.newHashSet(b1, b2));
+		
+		Session session = getSession();
+		session.beginTransaction();
+		session.save(a1);
+		session.getTransaction().commit();
+		
+		session.beginTransaction();
+		Query<Author> query = session.createQuery(FILTERED_FETCH);
+		List<Author> authors = query.list();
+		authors.get(0).setName("some name");
+		session.update(authors.get(0));
+		session.getTransaction().commit();
+		session.clear();
+		
+		session.beginTransaction();
+		query = session.createQuery(FULL_FETCH);
+		authors = query.list();
+		assertThat(authors.get(0).getBooks()).hasSize(2);
+		session.getTransaction().commit();
+		session.close();
+		
+		assertThat(libraryStatistics.getEntityInsertCount()).isEqualTo(3);
+		//the filtered collection isn't dirty, so only the name gets written
+		assertThat(libraryStatistics.getEntityUpdateCount()).isEqualTo(1);
+		assertThat(libraryStatistics.getEntityDeleteCount()).isZero();
+		assertThat(libraryStatistics.getQueryExecutionCount()).isEqualTo(2);
+		assertThat(libraryStatistics.getFlushCount()).isGreaterThanOrEqualTo(3);
+		//after the clear, the author and both books are read from the join fetch
+		assertThat(libraryStatistics.getEntityLoadCount()).isGreaterThanOrEqualTo(3);
+		
+		assertThat(libraryStatistics.queryLatency().getQueryLatency(FILTERED_FETCH).getCount()).isEqualTo(1);
+		assertThat(libraryStatistics.queryLatency().getQueryLatency(FULL_FETCH).getCount()).isEqualTo(1);
+		assertThat(libraryStatistics.slowestQueries(5)).hasSize(2);
+		
+		//and the same numbers are visible over JMX
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("main:type=LibraryStatistics");
+		assertThat(server.getAttribute(name, "EntityInsertCount")).isEqualTo(3L);
+		assertThat(server.getAttribute(name, "QueryExecutionCount")).isEqualTo(2L);
+	}
+
+}
@@ -0,0 +1,72 @@
+package main;
+
+import java.util.HashSet;
+
+import main.models.Author;
+import main.models.AuthorAward;
+import main.models.Book;
+
+/**
+ * The transient authors the tests (and the benchmarks) save, e.g.
+ * {@code author("Alice").books(3).rewards(100L, null).build()}. Book titles and award descriptions are made
+ * from the author's name, so they are unique as long as the names are.
+ */
+public final class TestAuthors {
+
+	private final Author author = new Author();
+
+	private TestAuthors(String name) {
+		author.setName(name);
+		author.setAuthorAward(new HashSet<>());
+	}
+
+	public static TestAuthors author(String name) {
+		return new TestAuthors(name);
+	}
+
+	public TestAuthors books(int count) {
+		for (int i = 0; i < count; i++) {
+			book(author.getName() + " book " + i);
+		}
+		return this;
+	}
+
+	public TestAuthors book(String title) {
+		Book book = new Book();
+		book.setTitle(title);
+		author.addBook(book);
+		return this;
+	}
+
+	/**
+	 * Awards without a monetary reward.
+	 */
+	public TestAuthors awards(int count) {
+		for (int i = 0; i < count; i++) {
+			award(null);
+		}
+		return this;
+	}
+
+	/**
+	 * An award per reward, in order; a null reward is an award without one.
+	 */
+	public TestAuthors rewards(Long... rewards) {
+		for (Long reward : rewards) {
+			award(reward);
+		}
+		return this;
+	}
+
+	public Author build() {
+		return author;
+	}
+
+	private void award(Long reward) {
+		AuthorAward award = new AuthorAward();
+		award.setAwardDescription(author.getName() + " award " + author.getAuthorAward().size());
+		award.setMonetaryReward(reward);
+		award.setAuthor(author);
+		author.getAuthorAward().add(award);
+	}
+}
@@ -0,0 +1,68 @@
+package main;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * The database the tests run against. Unless library.jdbc.url is set (e.g. to the docker one), every test
+ * JVM starts its own PostgreSQL on a free port and runs buildtables.sql once, so gradle can run test
+ * classes in parallel forks without them seeing each other's rows.
+ */
+final class TestDatabase {
+
+	private static EmbeddedPostgres postgres;
+
+	private TestDatabase() {
+	}
+
+	/**
+	 * Points library.jdbc.* at the embedded database, starting it on the first call. Has to run before
+	 * the application context is created.
+	 */
+	static synchronized void start() {
+		if (postgres != null || System.getProperty("library.jdbc.url") != null) {
+			return;
+		}
+		try {
+			postgres = EmbeddedPostgres.builder().start();
+			try (Connection connection = postgres.getPostgresDatabase().getConnection()) {
+				buildTables(connection);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (SQLException e) {
+			throw new IllegalStateException("buildtables.sql failed", e);
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(TestDatabase::stop));
+		System.setProperty("library.jdbc.url", postgres.getJdbcUrl("postgres", "postgres"));
+		System.setProperty("library.jdbc.user", "postgres");
+		System.setProperty("library.jdbc.password", "");
+	}
+
+	/**
+	 * Runs buildtables.sql; the tables go to the first schema on the connection's search_path.
+	 */
+	static void buildTables(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute(new String(Files.readAllBytes(Paths.get("buildtables.sql")), StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void stop() {
+		try {
+			postgres.close();
+		} catch (IOException e) {
+			//the process goes with the jvm anyway
+		}
+	}
+}